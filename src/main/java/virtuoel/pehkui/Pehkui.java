@@ -4,9 +4,13 @@ import org.spongepowered.asm.logging.ILogger;
 import org.spongepowered.asm.service.MixinService;
 
 import net.fabricmc.api.ModInitializer;
+import net.fabricmc.fabric.api.event.lifecycle.v1.ServerEntityEvents;
+import net.fabricmc.fabric.api.event.lifecycle.v1.ServerLifecycleEvents;
+import net.fabricmc.fabric.api.event.lifecycle.v1.ServerTickEvents;
 import net.fabricmc.fabric.api.networking.v1.ServerPlayConnectionEvents;
 import net.minecraft.util.Identifier;
 import virtuoel.pehkui.api.PehkuiConfig;
+import virtuoel.pehkui.api.ScaleRegistries;
 import virtuoel.pehkui.api.ScaleTypes;
 import virtuoel.pehkui.command.PehkuiEntitySelectorOptions;
 import virtuoel.pehkui.util.CommandUtils;
@@ -17,6 +21,11 @@ import virtuoel.pehkui.util.ImmersivePortalsCompatibility;
 import virtuoel.pehkui.util.ModLoaderUtils;
 import virtuoel.pehkui.util.MulticonnectCompatibility;
 import virtuoel.pehkui.util.ReachEntityAttributesCompatibility;
+import virtuoel.pehkui.util.ScaleIndexUtils;
+import virtuoel.pehkui.util.ScalePaletteUtils;
+import virtuoel.pehkui.util.ScaleSyncBatchUtils;
+import virtuoel.pehkui.util.TrackedScaleSyncUtils;
+import virtuoel.pehkui.util.VersionUtils;
 
 public class Pehkui implements ModInitializer
 {
@@ -54,6 +63,26 @@ public class Pehkui implements ModInitializer
 			});
 		}
 		
+		if (ModLoaderUtils.isModLoaded("fabric-lifecycle-events-v1"))
+		{
+			ServerLifecycleEvents.SERVER_STARTING.register(server -> ScaleRegistries.freeze());
+			ServerLifecycleEvents.SERVER_STARTING.register(ScalePaletteUtils::onServerStarting);
+			ServerLifecycleEvents.SERVER_STOPPED.register(ScalePaletteUtils::onServerStopped);
+			ServerLifecycleEvents.SERVER_STARTING.register(TrackedScaleSyncUtils::onServerStarting);
+			ServerLifecycleEvents.SERVER_STOPPED.register(TrackedScaleSyncUtils::onServerStopped);
+			ServerTickEvents.END_SERVER_TICK.register(ScaleSyncBatchUtils::flush);
+			ScaleSyncBatchUtils.enable();
+			
+			if (VersionUtils.MINOR >= 17)
+			{
+				ServerLifecycleEvents.SERVER_STARTING.register(ScaleIndexUtils::onServerStarting);
+				ServerLifecycleEvents.SERVER_STOPPED.register(ScaleIndexUtils::onServerStopped);
+				ServerEntityEvents.ENTITY_LOAD.register(ScaleIndexUtils::onEntityLoad);
+				ServerEntityEvents.ENTITY_UNLOAD.register(ScaleIndexUtils::onEntityUnload);
+				ScaleIndexUtils.enable();
+			}
+		}
+		
 		GravityChangerCompatibility.INSTANCE.getClass();
 		IdentityCompatibility.INSTANCE.getClass();
 		ImmersivePortalsCompatibility.INSTANCE.getClass();
@@ -73,5 +102,7 @@ public class Pehkui implements ModInitializer
 	
 	public static final Identifier SCALE_PACKET = id("scale");
 	public static final Identifier CONFIG_SYNC_PACKET = id("config_sync");
+	public static final Identifier SCALE_PALETTE_PACKET = id("scale_palette");
 	public static final Identifier DEBUG_PACKET = id("debug");
+	public static final Identifier TRACKED_SCALE_SYNC_PACKET = id("tracked_scale_sync");
 }
@@ -3,18 +3,18 @@ package virtuoel.pehkui;
 import org.spongepowered.asm.mixin.MixinEnvironment;
 
 import net.fabricmc.api.ClientModInitializer;
+import net.fabricmc.fabric.api.client.networking.v1.ClientPlayConnectionEvents;
 import net.fabricmc.fabric.api.client.networking.v1.ClientPlayNetworking;
-import net.minecraft.entity.Entity;
-import net.minecraft.nbt.NbtCompound;
-import net.minecraft.util.Identifier;
-import virtuoel.pehkui.api.ScaleRegistries;
+import net.minecraft.network.PacketByteBuf;
 import virtuoel.pehkui.server.command.DebugCommand;
 import virtuoel.pehkui.server.command.DebugCommand.DebugPacketType;
 import virtuoel.pehkui.util.ConfigSyncUtils;
 import virtuoel.pehkui.util.I18nUtils;
 import virtuoel.pehkui.util.MixinTargetClasses;
 import virtuoel.pehkui.util.ModLoaderUtils;
+import virtuoel.pehkui.util.ScalePaletteUtils;
 import virtuoel.pehkui.util.ScaleUtils;
+import virtuoel.pehkui.util.TrackedScaleSyncUtils;
 
 public class PehkuiClient implements ClientModInitializer
 {
@@ -25,31 +25,42 @@ public class PehkuiClient implements ClientModInitializer
 		{
 			ClientPlayNetworking.registerGlobalReceiver(Pehkui.SCALE_PACKET, (client, handler, buf, sender) ->
 			{
-				final int id = buf.readVarInt();
+				final PacketByteBuf buffer = new PacketByteBuf(buf.copy());
 				
-				for (int i = buf.readInt(); i > 0; i--)
+				client.execute(() ->
 				{
-					final Identifier typeId = buf.readIdentifier();
-					
-					final NbtCompound scaleData = ScaleUtils.buildScaleNbtFromPacketByteBuf(buf);
-					
-					if (!ScaleRegistries.SCALE_TYPES.containsKey(typeId))
+					try
 					{
-						continue;
+						ScaleUtils.applyScalePacket(client.world, buffer);
 					}
-					
-					client.execute(() ->
+					finally
 					{
-						final Entity e = client.world.getEntityById(id);
-						
-						if (e != null)
-						{
-							ScaleRegistries.getEntry(ScaleRegistries.SCALE_TYPES, typeId).getScaleData(e).readNbt(scaleData);
-						}
-					});
+						buffer.release();
+					}
+				});
+			});
+			
+			ClientPlayNetworking.registerGlobalReceiver(Pehkui.SCALE_PALETTE_PACKET, (client, handler, buf, sender) ->
+			{
+				final int version = ScalePaletteUtils.readPalette(buf);
+				
+				if (version != ScalePaletteUtils.PROTOCOL_VERSION)
+				{
+					handler.getConnection().disconnect(I18nUtils.translate("pehkui.disconnect.protocol_version", "Server uses version %s of Pehkui's scale sync protocol, but this client uses version %s.", version, ScalePaletteUtils.PROTOCOL_VERSION));
 				}
 			});
 			
+			ClientPlayNetworking.registerGlobalReceiver(Pehkui.TRACKED_SCALE_SYNC_PACKET, (client, handler, buf, sender) ->
+			{
+				TrackedScaleSyncUtils.setReceiving(true);
+			});
+			
+			ClientPlayConnectionEvents.DISCONNECT.register((handler, client) ->
+			{
+				ScalePaletteUtils.resetReceivedPalette();
+				TrackedScaleSyncUtils.setReceiving(false);
+			});
+			
 			ClientPlayNetworking.registerGlobalReceiver(Pehkui.CONFIG_SYNC_PACKET, (client, handler, buf, sender) ->
 			{
 				client.execute(ConfigSyncUtils.readConfigs(buf));
@@ -45,6 +45,13 @@ public class PehkuiConfig
 		public final Supplier<Boolean> enableCommands;
 		public final Supplier<Boolean> enableDebugCommands;
 		
+		public final Supplier<Boolean> sparseScaleData;
+		public final Supplier<Boolean> packedScaleNbt;
+		public final Supplier<Boolean> timeBasedScaleTransitions;
+		public final Supplier<Double> reducedSyncDistance;
+		public final Supplier<Boolean> trackedBaseScaleSync;
+		public final Supplier<Boolean> scaleSelectorIndex;
+		
 		public final Supplier<Boolean> scaledFallDamage;
 		public final Supplier<Boolean> scaledMotion;
 		public final Supplier<Boolean> scaledReach;
@@ -65,6 +72,13 @@ public class PehkuiConfig
 			this.enableCommands = builder.booleanConfig("enableCommands", true);
 			this.enableDebugCommands = builder.booleanConfig("enableDebugCommands", false);
 			
+			this.sparseScaleData = builder.booleanConfig("sparseScaleData", false);
+			this.packedScaleNbt = builder.booleanConfig("packedScaleNbt", false);
+			this.timeBasedScaleTransitions = builder.booleanConfig("timeBasedScaleTransitions", false);
+			this.reducedSyncDistance = builder.doubleConfig("reducedSyncDistance", 0.0D);
+			this.trackedBaseScaleSync = builder.booleanConfig("trackedBaseScaleSync", false);
+			this.scaleSelectorIndex = builder.booleanConfig("scaleSelectorIndex", false);
+			
 			this.scaledFallDamage = builder.booleanConfig(synced("scaledFallDamage", "boolean"), true);
 			this.scaledMotion = builder.booleanConfig(synced("scaledMotion", "boolean"), true);
 			this.scaledReach = builder.booleanConfig(synced("scaledReach", "boolean"), true);
@@ -102,7 +116,7 @@ public class PehkuiConfig
 						ScaleRegistries.register(
 							ScaleRegistries.SCALE_MODIFIERS,
 							Pehkui.id("clamping", path),
-							new ClampingScaleModifier(min::get, max::get, 0.0F)
+							ClampingScaleModifier.ofConfig(min::get, max::get, 0.0F)
 						)
 					);
 				}
@@ -1,54 +1,112 @@
 package virtuoel.pehkui.api;
 
+import java.util.AbstractSet;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
 import java.util.Objects;
-import java.util.Optional;
 import java.util.SortedSet;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.IntFunction;
+import java.util.function.ToIntFunction;
 
 import org.jetbrains.annotations.ApiStatus;
 import org.jetbrains.annotations.Nullable;
 
 import it.unimi.dsi.fastutil.floats.Float2FloatFunction;
-import it.unimi.dsi.fastutil.objects.ObjectAVLTreeSet;
 import net.fabricmc.fabric.api.util.NbtType;
 import net.minecraft.entity.Entity;
-import net.minecraft.entity.EntityType;
 import net.minecraft.nbt.NbtCompound;
 import net.minecraft.nbt.NbtElement;
 import net.minecraft.nbt.NbtList;
 import net.minecraft.nbt.NbtOps;
 import net.minecraft.network.PacketByteBuf;
 import net.minecraft.util.Identifier;
+import virtuoel.pehkui.util.PackedScaleNbtUtils;
 import virtuoel.pehkui.util.PehkuiEntityExtensions;
+import virtuoel.pehkui.util.PehkuiTrackedScaleExtensions;
+import virtuoel.pehkui.util.ScaleIndexUtils;
+import virtuoel.pehkui.util.ScaleModifierChain;
+import virtuoel.pehkui.util.ScalePaletteUtils;
+import virtuoel.pehkui.util.ScaleRenderUtils;
+import virtuoel.pehkui.util.TrackedScaleSyncUtils;
 
 public class ScaleData
 {
+	@ApiStatus.Internal
+	public static final ScaleData[] EMPTY_ARRAY = {};
+	
+	private static final long NO_TRANSITION = Long.MIN_VALUE;
+	
 	private float baseScale;
 	private float prevBaseScale;
 	private float initialScale;
 	private float targetScale;
 	private int scaleTicks;
 	private int totalScaleTicks;
+	private long transitionStart = NO_TRANSITION;
 	private Boolean persistent = null;
 	private Float2FloatFunction easing = null;
 	
 	private boolean shouldSync;
+	private SyncedValues syncBaseline = null;
+	private boolean simulatedTick = false;
 	
 	private final ScaleType scaleType;
 	
 	@Nullable
 	private final Entity entity;
 	
+	private ScaleModifierChain modifierChain;
 	private final SortedSet<ScaleModifier> baseValueModifiers;
-	private final SortedSet<ScaleModifier> differingModifierCache;
 	private boolean trackModifierChanges;
 	private float cachedScale = Float.NaN;
+	private long cachedScaleStamp;
+	private boolean cachedScaleExact;
 	private float cachedPrevScale = Float.NaN;
+	private long cachedPrevScaleStamp;
+	private boolean cachedPrevScaleExact;
+	private float cachedFrameScale = Float.NaN;
+	private float cachedFrameDelta;
+	private int cachedFrame;
+	private int invalidationPass;
+	
+	private static volatile int cacheEpoch = 0;
+	private static final AtomicInteger INVALIDATION_PASS_COUNTER = new AtomicInteger();
+	
+	/**
+	 * Clients advance transitions on their own, so the base scale changes of a transition are only synced every this many ticks to correct drift.
+	 * The tick that completes a transition is always synced, so clients end up with the exact target scale.
+	 */
+	private static final int TRANSITION_RESYNC_INTERVAL = 20;
+	
+	private static final int SYNC_BASE_SCALE = 1 << 0;
+	private static final int SYNC_PREV_BASE_SCALE = 1 << 1;
+	private static final int SYNC_INITIAL_SCALE = 1 << 2;
+	private static final int SYNC_TARGET_SCALE = 1 << 3;
+	private static final int SYNC_SCALE_TICKS = 1 << 4;
+	private static final int SYNC_TOTAL_SCALE_TICKS = 1 << 5;
+	private static final int SYNC_MODIFIERS = 1 << 6;
+	private static final int SYNC_PERSISTENCE = 1 << 7;
+	private static final int SYNC_EASING = 1 << 8;
+	private static final int SYNC_ALL = (1 << 9) - 1;
+	
+	private static final int PACKED_BASE_SCALE = 1 << 0;
+	private static final int PACKED_INITIAL_SCALE = 1 << 1;
+	private static final int PACKED_TARGET_SCALE = 1 << 2;
+	private static final int PACKED_SCALE_TICKS = 1 << 3;
+	private static final int PACKED_TOTAL_SCALE_TICKS = 1 << 4;
+	private static final int PACKED_PERSISTENCE = 1 << 5;
+	private static final int PACKED_EASING = 1 << 6;
+	private static final int PACKED_MODIFIERS = 1 << 7;
 	
 	/**
 	 * @see {@link ScaleType#getScaleData(Entity)}
 	 * @see {@link ScaleData.Builder#create()}
 	 */
-	@SuppressWarnings("serial")
 	@ApiStatus.Internal
 	protected ScaleData(ScaleType scaleType, @Nullable Entity entity)
 	{
@@ -66,52 +124,8 @@ public class ScaleData
 		
 		this.shouldSync = false;
 		
-		this.baseValueModifiers = new ObjectAVLTreeSet<ScaleModifier>()
-		{
-			@Override
-			public boolean add(ScaleModifier arg0)
-			{
-				if (super.add(arg0))
-				{
-					invalidateCachedScales();
-					
-					if (ScaleData.this.trackModifierChanges)
-					{
-						invalidateCachedModifiers();
-						onUpdate();
-					}
-					
-					return true;
-				}
-				
-				return false;
-			}
-			
-			@Override
-			public boolean remove(Object arg0)
-			{
-				if (super.remove(arg0))
-				{
-					invalidateCachedScales();
-					
-					if (ScaleData.this.trackModifierChanges)
-					{
-						invalidateCachedModifiers();
-						onUpdate();
-					}
-					
-					return true;
-				}
-				
-				return false;
-			}
-		};
-		
-		this.differingModifierCache = new ObjectAVLTreeSet<>();
-		
-		this.trackModifierChanges = false;
-		
-		getBaseValueModifiers().addAll(getScaleType().getDefaultBaseValueModifiers());
+		this.modifierChain = scaleType.getDefaultModifierChain();
+		this.baseValueModifiers = new ModifierChainView();
 		
 		this.trackModifierChanges = true;
 	}
@@ -122,7 +136,27 @@ public class ScaleData
 	 */
 	public void tick()
 	{
-		invalidateCachedScales();
+		if (this.transitionStart != NO_TRANSITION)
+		{
+			invalidateCachedScales();
+			
+			if (getCacheTime() - this.transitionStart >= getScaleTickDelay())
+			{
+				final float targetScale = getTargetScale();
+				
+				this.baseScale = getPrevBaseScale();
+				this.transitionStart = NO_TRANSITION;
+				this.initialScale = targetScale;
+				this.scaleTicks = 0;
+				setBaseScale(targetScale);
+			}
+			else if (getScaleType().getAffectsDimensions())
+			{
+				ScaleType.Builder.calculateDimensions(this);
+			}
+			
+			return;
+		}
 		
 		final float currScale = getBaseScale();
 		final float targetScale = getTargetScale();
@@ -140,7 +174,9 @@ public class ScaleData
 			else
 			{
 				this.scaleTicks++;
+				this.simulatedTick = this.scaleTicks < scaleTickDelay && this.scaleTicks % TRANSITION_RESYNC_INTERVAL != 0;
 				setBaseScale(calculateScaleForTick(this.scaleTicks, 0));
+				this.simulatedTick = false;
 			}
 		}
 		else
@@ -149,16 +185,29 @@ public class ScaleData
 			{
 				this.prevBaseScale = currScale;
 				
-				this.cachedPrevScale = Float.NaN;
+				invalidateCachedScales();
 			}
 			
 			if (this.initialScale != targetScale)
 			{
 				this.initialScale = targetScale;
+				
+				invalidateTrackingPacket();
 			}
 		}
 	}
 	
+	/**
+	 * Checks whether calling {@link #tick()} would change any values.
+	 * 
+	 * @return true if the base scale is still moving towards the target scale
+	 */
+	@ApiStatus.Internal
+	public boolean isChanging()
+	{
+		return this.transitionStart != NO_TRANSITION || this.baseScale != this.targetScale || this.prevBaseScale != this.baseScale || this.initialScale != this.targetScale;
+	}
+	
 	public ScaleType getScaleType()
 	{
 		return this.scaleType;
@@ -179,6 +228,40 @@ public class ScaleData
 		return baseValueModifiers;
 	}
 	
+	/**
+	 * @return Interned immutable chain backing {@link #getBaseValueModifiers()}
+	 */
+	@ApiStatus.Internal
+	public ScaleModifierChain getModifierChain()
+	{
+		return modifierChain;
+	}
+	
+	/**
+	 * Replaces all modifiers at once, notifying listeners a single time if they changed.
+	 * 
+	 * @param chain Chain of modifiers to use
+	 */
+	@ApiStatus.Internal
+	public void setModifierChain(ScaleModifierChain chain)
+	{
+		if (chain != this.modifierChain)
+		{
+			this.modifierChain = chain;
+			invalidateCachedScales();
+			
+			if (this.trackModifierChanges)
+			{
+				onUpdate();
+			}
+		}
+	}
+	
+	private ScaleModifierChain getDifferingModifiers()
+	{
+		return getModifierChain().differenceFrom(getScaleType().getDefaultModifierChain());
+	}
+	
 	/**
 	 * Gets the scale without any modifiers applied
 	 * 
@@ -197,6 +280,13 @@ public class ScaleData
 	 */
 	public float getBaseScale(float delta)
 	{
+		if (this.transitionStart != NO_TRANSITION)
+		{
+			final int ticks = getScaleTicks();
+			
+			return ticks >= getScaleTickDelay() ? getTargetScale() : calculateScaleForTick(ticks, delta == 1.0F ? 0.0F : delta);
+		}
+		
 		return delta == 1.0F ? baseScale : calculateScaleForTick(scaleTicks, delta);
 	}
 	
@@ -209,6 +299,8 @@ public class ScaleData
 	{
 		scale = (float) getScaleType().clampBaseScale(this, scale);
 		
+		settleTransition();
+		
 		this.prevBaseScale = getBaseScale();
 		this.baseScale = scale;
 		onUpdate();
@@ -233,23 +325,35 @@ public class ScaleData
 	public float getScale(float delta)
 	{
 		final Entity e = getEntity();
-		final boolean canCache = delta == 1.0F && e != null && e.world != null && !e.world.isClient && (e.getType() != EntityType.PLAYER || !getScaleType().getAffectsDimensions()) && !((PehkuiEntityExtensions) e).pehkui_isFirstUpdate();
+		final boolean canCache = delta == 1.0F && e != null && e.world != null && !((PehkuiEntityExtensions) e).pehkui_isFirstUpdate();
 		
-		if (canCache && !Float.isNaN(cachedScale))
+		if (canCache && !Float.isNaN(cachedScale) && cachedScaleStamp == getCacheStamp(cachedScaleExact))
 		{
 			return cachedScale;
 		}
 		
-		float value = getBaseScale(delta);
+		final boolean canCacheFrame = delta != 1.0F && e != null && e.world != null && e.world.isClient;
 		
-		for (final ScaleModifier m : getBaseValueModifiers())
+		if (canCacheFrame && !Float.isNaN(cachedFrameScale) && cachedFrame == ScaleRenderUtils.getRenderFrame() && Float.floatToIntBits(cachedFrameDelta) == Float.floatToIntBits(delta))
 		{
-			value = m.modifyScale(this, value, delta);
+			return cachedFrameScale;
 		}
 		
+		float value = getBaseScale(delta);
+		
+		value = getModifierChain().modifyScale(this, value, delta);
+		
 		if (canCache)
 		{
 			cachedScale = value;
+			cachedScaleExact = isCacheExact(false);
+			cachedScaleStamp = getCacheStamp(cachedScaleExact);
+		}
+		else if (canCacheFrame)
+		{
+			cachedFrameScale = value;
+			cachedFrameDelta = delta;
+			cachedFrame = ScaleRenderUtils.getRenderFrame();
 		}
 		
 		return value;
@@ -285,18 +389,88 @@ public class ScaleData
 	{
 		targetScale = (float) getScaleType().clampTargetScale(this, targetScale);
 		
+		settleTransition();
+		
 		this.scaleTicks = calculateRemainingScaleTicks();
 		this.initialScale = getTargetScale();
 		this.targetScale = targetScale;
 		
-		markForSync(true);
+		startTransition();
+		
+		markChanged();
+	}
+	
+	/**
+	 * Amount of ticks the current transition has progressed, computed from world time for time-based transitions.
+	 */
+	@ApiStatus.Internal
+	public int getScaleTicks()
+	{
+		if (this.transitionStart != NO_TRANSITION)
+		{
+			return (int) Math.min(Math.max(getCacheTime() - this.transitionStart, 0L), getScaleTickDelay());
+		}
+		
+		return this.scaleTicks;
+	}
+	
+	private boolean usesTimeBasedTransitions()
+	{
+		final Entity e = getEntity();
+		
+		return e != null && e.world != null && PehkuiConfig.COMMON.timeBasedScaleTransitions.get();
+	}
+	
+	/**
+	 * Switches an ongoing transition to be evaluated from world time, if enabled.
+	 * The base scale then no longer gets set every tick, so change events and syncs only happen when the transition starts and ends.
+	 */
+	private void startTransition()
+	{
+		if (this.baseScale != this.targetScale && usesTimeBasedTransitions())
+		{
+			this.transitionStart = getCacheTime() - this.scaleTicks;
+		}
+		else
+		{
+			this.transitionStart = NO_TRANSITION;
+		}
+	}
+	
+	/**
+	 * Stores the current values of a time-based transition, so that they can be modified directly.
+	 */
+	private void settleTransition()
+	{
+		if (this.transitionStart != NO_TRANSITION)
+		{
+			final int ticks = getScaleTicks();
+			final float prevBaseScale = getPrevBaseScale();
+			final float baseScale = getBaseScale();
+			
+			this.transitionStart = NO_TRANSITION;
+			
+			if (ticks >= getScaleTickDelay())
+			{
+				this.initialScale = getTargetScale();
+				this.scaleTicks = 0;
+			}
+			else
+			{
+				this.scaleTicks = ticks;
+			}
+			
+			this.prevBaseScale = prevBaseScale;
+			this.baseScale = baseScale;
+		}
 	}
 	
 	@ApiStatus.Internal
 	@ApiStatus.NonExtendable
 	protected float calculateScaleForTick(int ticks, float delta)
 	{
-		final Float2FloatFunction easing = Optional.ofNullable(getEasing()).orElseGet(getScaleType()::getDefaultEasing);
+		final Float2FloatFunction dataEasing = getEasing();
+		final Float2FloatFunction easing = dataEasing != null ? dataEasing : getScaleType().getDefaultEasing();
 		
 		final float progress = (float) ticks + delta;
 		final int total = getScaleTickDelay();
@@ -337,7 +511,7 @@ public class ScaleData
 	public void setScaleTickDelay(int ticks)
 	{
 		this.totalScaleTicks = ticks;
-		markForSync(true);
+		markChanged();
 	}
 	
 	/**
@@ -347,19 +521,18 @@ public class ScaleData
 	 */
 	public float getPrevScale()
 	{
-		if (!Float.isNaN(cachedPrevScale))
+		if (!Float.isNaN(cachedPrevScale) && cachedPrevScaleStamp == getCacheStamp(cachedPrevScaleExact))
 		{
 			return cachedPrevScale;
 		}
 		
 		float value = getPrevBaseScale();
 		
-		for (final ScaleModifier m : getBaseValueModifiers())
-		{
-			value = m.modifyPrevScale(this, value);
-		}
+		value = getModifierChain().modifyPrevScale(this, value);
 		
 		cachedPrevScale = value;
+		cachedPrevScaleExact = isCacheExact(true);
+		cachedPrevScaleStamp = getCacheStamp(cachedPrevScaleExact);
 		
 		return value;
 	}
@@ -371,13 +544,20 @@ public class ScaleData
 	 */
 	public float getPrevBaseScale()
 	{
+		if (this.transitionStart != NO_TRANSITION)
+		{
+			final int ticks = getScaleTicks();
+			
+			return ticks <= 0 ? this.prevBaseScale : calculateScaleForTick(ticks - 1, 0.0F);
+		}
+		
 		return this.prevBaseScale;
 	}
 	
 	public void setPersistence(@Nullable Boolean persistent)
 	{
 		this.persistent = persistent;
-		markForSync(true);
+		markChanged();
 	}
 	
 	public @Nullable Boolean getPersistence()
@@ -399,10 +579,63 @@ public class ScaleData
 	public void setEasing(@Nullable Float2FloatFunction easing)
 	{
 		this.easing = easing;
-		markForSync(true);
+		markChanged();
 	}
 	
+	/**
+	 * Marks this to be synced to clients or clears the mark.
+	 * <p>Marking from outside always syncs every field, for clients that may have lost their copy of this data.
+	 */
 	public void markForSync(boolean sync)
+	{
+		if (sync)
+		{
+			this.syncBaseline = null;
+		}
+		
+		setShouldSync(sync);
+	}
+	
+	/**
+	 * Marks this to be synced after one of its own fields changed, so that only changed fields need to be sent.
+	 * Changes made while ticking a transition are skipped, since clients tick the same transition from its synced start.
+	 */
+	private void markChanged()
+	{
+		invalidateTrackingPacket();
+		
+		final Entity e = getEntity();
+		
+		if (e != null)
+		{
+			((PehkuiEntityExtensions) e).pehkui_setHasNonDefaultScales(true);
+			
+			if (getScaleType() == ScaleTypes.BASE && ((PehkuiTrackedScaleExtensions) e).pehkui_hasTrackedScale())
+			{
+				final boolean instant = this.baseScale == this.targetScale && this.transitionStart == NO_TRANSITION;
+				((PehkuiTrackedScaleExtensions) e).pehkui_setTrackedScale(this.targetScale, TrackedScaleSyncUtils.getTrackedScaleTickDelay(this, instant));
+			}
+			
+			ScaleIndexUtils.onScaleChanged(this);
+		}
+		
+		if (!this.simulatedTick)
+		{
+			setShouldSync(true);
+		}
+	}
+	
+	private void invalidateTrackingPacket()
+	{
+		final Entity e = getEntity();
+		
+		if (e != null)
+		{
+			((PehkuiEntityExtensions) e).pehkui_setTrackingScalePacket(null, Long.MIN_VALUE);
+		}
+	}
+	
+	private void setShouldSync(boolean sync)
 	{
 		final Entity e = getEntity();
 		
@@ -428,127 +661,457 @@ public class ScaleData
 	public void onUpdate()
 	{
 		invalidateCachedScales();
-		markForSync(true);
+		markChanged();
 		getScaleType().getScaleChangedEvent().invoker().onEvent(this);
 	}
 	
-	private void invalidateCachedModifiers()
+	private long getCacheTime()
 	{
-		this.differingModifierCache.clear();
-		this.differingModifierCache.addAll(getBaseValueModifiers());
-		this.differingModifierCache.removeAll(getScaleType().getDefaultBaseValueModifiers());
+		final Entity e = getEntity();
+		
+		return e == null || e.world == null ? 0L : e.world.getTime();
 	}
 	
-	private void invalidateCachedScales()
+	/**
+	 * Exact cached scales stay valid until invalidated, or until config values that modifiers may read change.
+	 * Other cached scales are only valid for the world tick they were computed in.
+	 */
+	private long getCacheStamp(boolean exact)
 	{
-		this.cachedScale = Float.NaN;
-		this.cachedPrevScale = Float.NaN;
+		return exact ? cacheEpoch : getCacheTime();
 	}
 	
-	public PacketByteBuf toPacket(PacketByteBuf buffer)
+	/**
+	 * Checks whether a freshly computed scale can be cached until it gets invalidated.
+	 * This is the case if every modifier is known to only depend on config values and the scales of other types,
+	 * and the scales of those types are exactly cached themselves.
+	 * Types without scale data on the entity can only be depended on if their default modifiers don't read other types,
+	 * since changes to the types those would read can't invalidate anything through them.
+	 */
+	private boolean isCacheExact(boolean prev)
 	{
-		buffer.writeFloat(this.baseScale)
-		.writeFloat(this.prevBaseScale)
-		.writeFloat(this.initialScale)
-		.writeFloat(this.targetScale)
-		.writeInt(this.scaleTicks)
-		.writeInt(this.totalScaleTicks)
-		.writeInt(this.differingModifierCache.size());
-		
-		for (final ScaleModifier modifier : this.differingModifierCache)
+		return this.transitionStart == NO_TRANSITION && isChainExact(getEntity(), getScaleType(), getModifierChain(), prev);
+	}
+	
+	private static boolean isChainExact(@Nullable Entity entity, ScaleType type, ScaleModifierChain chain, boolean prev)
+	{
+		if (!chain.isTracked())
 		{
-			buffer.writeIdentifier(ScaleRegistries.getId(ScaleRegistries.SCALE_MODIFIERS, modifier));
+			return false;
 		}
 		
-		buffer.writeByte(this.persistent == null ? -1 : this.persistent ? 1 : 0);
+		final ScaleType[] dependencies = chain.getDependencies();
 		
-		if (this.easing != null)
+		if (dependencies.length == 0)
 		{
-			buffer.writeBoolean(true);
-			buffer.writeIdentifier(ScaleRegistries.getId(ScaleRegistries.SCALE_EASINGS, this.easing));
+			return true;
 		}
-		else
+		
+		if (entity == null)
 		{
-			buffer.writeBoolean(false);
+			return false;
 		}
 		
-		return buffer;
-	}
-	
-	public void readNbt(NbtCompound tag)
-	{
-		final ScaleType type = getScaleType();
-		
-		this.baseScale = tag.contains("scale") ? tag.getFloat("scale") : type.getDefaultBaseScale();
-		this.prevBaseScale = tag.contains("previous") ? tag.getFloat("previous") : this.baseScale;
-		this.initialScale = tag.contains("initial") ? tag.getFloat("initial") : this.baseScale;
-		this.targetScale = tag.contains("target") ? tag.getFloat("target") : this.baseScale;
-		
-		this.scaleTicks = tag.contains("ticks") ? tag.getInt("ticks") : 0;
-		this.totalScaleTicks = tag.contains("total_ticks") ? tag.getInt("total_ticks") : type.getDefaultTickDelay();
-		
-		this.persistent = tag.contains("persistent") ? tag.getBoolean("persistent") : null;
-		
-		this.easing = tag.contains("easing") ? ScaleRegistries.getEntry(ScaleRegistries.SCALE_EASINGS, Identifier.tryParse(tag.getString("easing"))) : null;
-		
-		this.trackModifierChanges = false;
-		
-		final SortedSet<ScaleModifier> baseValueModifiers = getBaseValueModifiers();
-		
-		baseValueModifiers.clear();
+		final PehkuiEntityExtensions e = (PehkuiEntityExtensions) entity;
 		
-		baseValueModifiers.addAll(type.getDefaultBaseValueModifiers());
-		
-		if (tag.contains("baseValueModifiers"))
+		ScaleData data;
+		for (final ScaleType dependency : dependencies)
 		{
-			final NbtList modifiers = tag.getList("baseValueModifiers", NbtType.STRING);
+			if (dependency == type)
+			{
+				continue;
+			}
 			
-			Identifier id;
-			ScaleModifier modifier;
-			NbtElement element;
-			for (int i = 0; i < modifiers.size(); i++)
+			data = e.pehkui_getScaleDataIfPresent(dependency);
+			
+			if (data == null)
 			{
-				element = modifiers.get(i);
-				if (element.getType() == NbtElement.STRING_TYPE)
-				{
-					id = Identifier.tryParse(modifiers.getString(i));
-					modifier = ScaleRegistries.getEntry(ScaleRegistries.SCALE_MODIFIERS, id);
-				}
-				else if (element.getType() == NbtElement.COMPOUND_TYPE)
-				{
-					final NbtCompound compound = modifiers.getCompound(i);
-					id = Identifier.tryParse(compound.getString("id"));
-					modifier = ScaleRegistries.getEntry(ScaleRegistries.SCALE_MODIFIERS, id);
-				}
-				else
-				{
-					modifier = null;
-				}
+				final ScaleModifierChain defaultChain = dependency.getDefaultModifierChain();
 				
-				if (modifier != null)
+				if (!defaultChain.isTracked() || defaultChain.getDependencies().length != 0)
 				{
-					baseValueModifiers.add(modifier);
+					return false;
 				}
 			}
-			
-			invalidateCachedModifiers();
-		}
-		else
-		{
-			this.differingModifierCache.clear();
+			else if (prev ? Float.isNaN(data.cachedPrevScale) || !data.cachedPrevScaleExact : Float.isNaN(data.cachedScale) || !data.cachedScaleExact)
+			{
+				return false;
+			}
 		}
 		
-		this.trackModifierChanges = true;
-		
-		onUpdate();
+		return true;
 	}
 	
-	public NbtCompound writeNbt(NbtCompound tag)
+	/**
+	 * Invalidates all exactly cached scales, for when config values that modifiers may read have changed.
+	 */
+	@ApiStatus.Internal
+	public static void invalidateAllCachedScales()
 	{
-		final ScaleType type = getScaleType();
-		final float defaultBaseScale = type.getDefaultBaseScale();
-		
-		final float scale = getBaseScale();
+		cacheEpoch++;
+	}
+
+	/**
+	 * @return Counter that changes whenever exactly cached scales are invalidated through {@link #invalidateAllCachedScales()}
+	 */
+	@ApiStatus.Internal
+	public static int getCacheEpoch()
+	{
+		return cacheEpoch;
+	}
+	
+	private void invalidateCachedScales()
+	{
+		this.cachedScale = Float.NaN;
+		this.cachedPrevScale = Float.NaN;
+		this.cachedFrameScale = Float.NaN;
+		
+		final Entity e = getEntity();
+		
+		if (e != null)
+		{
+			((PehkuiEntityExtensions) e).pehkui_setTrackingScalePacket(null, Long.MIN_VALUE);
+			
+			final ScaleData[] scales = ((PehkuiEntityExtensions) e).pehkui_getScaleDataArray();
+			
+			if (scales.length != 0)
+			{
+				this.invalidationPass = INVALIDATION_PASS_COUNTER.incrementAndGet();
+				invalidateDependentScales(scales, getScaleType(), this.invalidationPass);
+			}
+		}
+	}
+	
+	/**
+	 * Invalidates the cached scales of all scale data whose modifiers read the given type, and then those of their own dependents.
+	 * Each scale data is visited once per pass, so dependency cycles end without allocating a visited set.
+	 */
+	private static void invalidateDependentScales(ScaleData[] scales, ScaleType type, int pass)
+	{
+		for (final ScaleData data : scales)
+		{
+			if (data != null && data.invalidationPass != pass && data.getModifierChain().dependsOn(type))
+			{
+				data.invalidationPass = pass;
+				data.cachedScale = Float.NaN;
+				data.cachedPrevScale = Float.NaN;
+				data.cachedFrameScale = Float.NaN;
+				invalidateDependentScales(scales, data.getScaleType(), pass);
+			}
+		}
+	}
+	
+	/**
+	 * Writes every synced field to a packet.
+	 * <p>If the fields differ from the ones last sent by {@link #toDeltaPacket(PacketByteBuf)}, the next delta will contain every field again,
+	 * since clients that received the delta may now have different values than the receiver of this packet.
+	 */
+	public PacketByteBuf toPacket(PacketByteBuf buffer)
+	{
+		discardOutdatedSyncBaseline();
+		
+		return new SyncedValues(this).write(buffer, SYNC_ALL);
+	}
+	
+	/**
+	 * Writes the fields that changed since the last delta to a packet. Should only be used for packets sent to every client tracking the entity.
+	 */
+	@ApiStatus.Internal
+	public PacketByteBuf toDeltaPacket(PacketByteBuf buffer)
+	{
+		final SyncedValues values = new SyncedValues(this);
+		final int fields = getChangedFields(this.syncBaseline, values) & ~getTrackedFields();
+		
+		this.syncBaseline = values;
+		
+		return values.write(buffer, fields);
+	}
+	
+	/**
+	 * @return true if any synced field differs from the ones sent by the last delta
+	 */
+	@ApiStatus.Internal
+	public boolean hasUnsyncedChanges()
+	{
+		return (getChangedFields(this.syncBaseline, new SyncedValues(this)) & ~getTrackedFields()) != 0;
+	}
+	
+	/**
+	 * @return Fields that deltas leave out because they are synced as tracked data of the entity instead, along with the fields that clients derive from them
+	 */
+	private int getTrackedFields()
+	{
+		final Entity e = getEntity();
+		
+		return getScaleType() == ScaleTypes.BASE && e != null && ((PehkuiTrackedScaleExtensions) e).pehkui_hasTrackedScale() ? SYNC_INITIAL_SCALE | SYNC_TARGET_SCALE | SYNC_SCALE_TICKS | SYNC_TOTAL_SCALE_TICKS : 0;
+	}
+	
+	/**
+	 * Makes the next delta contain every field if the current values differ from the last delta.
+	 * Called when a client starts tracking the entity, since that client gets the current values instead of the ones other clients have.
+	 */
+	@ApiStatus.Internal
+	public void discardOutdatedSyncBaseline()
+	{
+		if (hasUnsyncedChanges())
+		{
+			this.syncBaseline = null;
+		}
+	}
+	
+	private static int getChangedFields(@Nullable SyncedValues from, SyncedValues to)
+	{
+		if (from == null)
+		{
+			return SYNC_ALL;
+		}
+		
+		int fields = 0;
+		
+		if (from.baseScale != to.baseScale)
+		{
+			fields |= SYNC_BASE_SCALE;
+		}
+		
+		if (from.prevBaseScale != to.prevBaseScale)
+		{
+			fields |= SYNC_PREV_BASE_SCALE;
+		}
+		
+		if (from.initialScale != to.initialScale)
+		{
+			fields |= SYNC_INITIAL_SCALE;
+		}
+		
+		if (from.targetScale != to.targetScale)
+		{
+			fields |= SYNC_TARGET_SCALE;
+		}
+		
+		if (from.scaleTicks != to.scaleTicks)
+		{
+			fields |= SYNC_SCALE_TICKS;
+		}
+		
+		if (from.totalScaleTicks != to.totalScaleTicks)
+		{
+			fields |= SYNC_TOTAL_SCALE_TICKS;
+		}
+		
+		if (from.modifiers != to.modifiers)
+		{
+			fields |= SYNC_MODIFIERS;
+		}
+		
+		if (!Objects.equals(from.persistent, to.persistent))
+		{
+			fields |= SYNC_PERSISTENCE;
+		}
+		
+		if (from.easing != to.easing)
+		{
+			fields |= SYNC_EASING;
+		}
+		
+		return fields;
+	}
+	
+	/**
+	 * Reads the fields written by {@link #toPacket(PacketByteBuf)} or {@link #toDeltaPacket(PacketByteBuf)} into NBT.
+	 * Fields that were not part of a delta packet are left out.
+	 */
+	@ApiStatus.Internal
+	public static NbtCompound readSyncedFields(PacketByteBuf buffer, NbtCompound tag)
+	{
+		final ReceivedValues values = new ReceivedValues().read(buffer);
+		final int fields = values.fields;
+		
+		if ((fields & SYNC_BASE_SCALE) != 0)
+		{
+			tag.putFloat("scale", values.baseScale);
+		}
+		
+		if ((fields & SYNC_PREV_BASE_SCALE) != 0)
+		{
+			tag.putFloat("previous", values.prevBaseScale);
+		}
+		
+		if ((fields & SYNC_INITIAL_SCALE) != 0)
+		{
+			tag.putFloat("initial", values.initialScale);
+		}
+		
+		if ((fields & SYNC_TARGET_SCALE) != 0)
+		{
+			tag.putFloat("target", values.targetScale);
+		}
+		
+		if ((fields & SYNC_SCALE_TICKS) != 0)
+		{
+			tag.putInt("ticks", values.scaleTicks);
+		}
+		
+		if ((fields & SYNC_TOTAL_SCALE_TICKS) != 0)
+		{
+			tag.putInt("total_ticks", values.totalScaleTicks);
+		}
+		
+		if ((fields & SYNC_MODIFIERS) != 0 && values.modifierCount != 0)
+		{
+			final NbtList modifiers = new NbtList();
+			
+			for (int i = 0; i < values.modifierCount; i++)
+			{
+				modifiers.add(NbtOps.INSTANCE.createString(ScaleRegistries.getId(ScaleRegistries.SCALE_MODIFIERS, values.modifiers[i]).toString()));
+			}
+			
+			tag.put("baseValueModifiers", modifiers);
+		}
+		
+		if ((fields & SYNC_PERSISTENCE) != 0 && values.persistent != null)
+		{
+			tag.putBoolean("persistent", values.persistent);
+		}
+		
+		if ((fields & SYNC_EASING) != 0 && values.easing != null)
+		{
+			tag.put("easing", NbtOps.INSTANCE.createString(ScaleRegistries.getId(ScaleRegistries.SCALE_EASINGS, values.easing).toString()));
+		}
+		
+		return tag;
+	}
+	
+	/**
+	 * Applies values read from a scale packet. Fields that were not part of a delta packet keep their current values.
+	 * <p>Same as reading the NBT built from the packet, without building it.
+	 */
+	@ApiStatus.Internal
+	public void readReceivedValues(ReceivedValues values)
+	{
+		final int fields = values.fields;
+		
+		final float baseScale = (fields & SYNC_BASE_SCALE) != 0 ? values.baseScale : getBaseScale();
+		final float prevBaseScale = (fields & SYNC_PREV_BASE_SCALE) != 0 ? values.prevBaseScale : getPrevBaseScale();
+		final int scaleTicks = (fields & SYNC_SCALE_TICKS) != 0 ? values.scaleTicks : getScaleTicks();
+		
+		this.transitionStart = NO_TRANSITION;
+		this.baseScale = baseScale;
+		this.prevBaseScale = prevBaseScale;
+		this.scaleTicks = scaleTicks;
+		
+		if ((fields & SYNC_INITIAL_SCALE) != 0)
+		{
+			this.initialScale = values.initialScale;
+		}
+		
+		if ((fields & SYNC_TARGET_SCALE) != 0)
+		{
+			this.targetScale = values.targetScale;
+		}
+		
+		if ((fields & SYNC_TOTAL_SCALE_TICKS) != 0)
+		{
+			this.totalScaleTicks = values.totalScaleTicks;
+		}
+		
+		if ((fields & SYNC_PERSISTENCE) != 0)
+		{
+			this.persistent = values.persistent;
+		}
+		
+		if ((fields & SYNC_EASING) != 0)
+		{
+			this.easing = values.easing;
+		}
+		
+		if ((fields & SYNC_MODIFIERS) != 0)
+		{
+			ScaleModifierChain modifierChain = getScaleType().getDefaultModifierChain();
+			
+			for (int i = 0; i < values.modifierCount; i++)
+			{
+				modifierChain = modifierChain.with(values.modifiers[i]);
+			}
+			
+			this.trackModifierChanges = false;
+			setModifierChain(modifierChain);
+			this.trackModifierChanges = true;
+		}
+		
+		startTransition();
+		
+		onUpdate();
+	}
+	
+	public void readNbt(NbtCompound tag)
+	{
+		final ScaleType type = getScaleType();
+		
+		this.transitionStart = NO_TRANSITION;
+		this.baseScale = tag.contains("scale") ? tag.getFloat("scale") : type.getDefaultBaseScale();
+		this.prevBaseScale = tag.contains("previous") ? tag.getFloat("previous") : this.baseScale;
+		this.initialScale = tag.contains("initial") ? tag.getFloat("initial") : this.baseScale;
+		this.targetScale = tag.contains("target") ? tag.getFloat("target") : this.baseScale;
+		
+		this.scaleTicks = tag.contains("ticks") ? tag.getInt("ticks") : 0;
+		this.totalScaleTicks = tag.contains("total_ticks") ? tag.getInt("total_ticks") : type.getDefaultTickDelay();
+		
+		this.persistent = tag.contains("persistent") ? tag.getBoolean("persistent") : null;
+		
+		this.easing = tag.contains("easing") ? ScaleRegistries.getEntry(ScaleRegistries.SCALE_EASINGS, Identifier.tryParse(tag.getString("easing"))) : null;
+		
+		this.trackModifierChanges = false;
+		
+		ScaleModifierChain modifierChain = type.getDefaultModifierChain();
+		
+		if (tag.contains("baseValueModifiers"))
+		{
+			final NbtList modifiers = tag.getList("baseValueModifiers", NbtType.STRING);
+			
+			Identifier id;
+			ScaleModifier modifier;
+			NbtElement element;
+			for (int i = 0; i < modifiers.size(); i++)
+			{
+				element = modifiers.get(i);
+				if (element.getType() == NbtElement.STRING_TYPE)
+				{
+					id = Identifier.tryParse(modifiers.getString(i));
+					modifier = ScaleRegistries.getEntry(ScaleRegistries.SCALE_MODIFIERS, id);
+				}
+				else if (element.getType() == NbtElement.COMPOUND_TYPE)
+				{
+					final NbtCompound compound = modifiers.getCompound(i);
+					id = Identifier.tryParse(compound.getString("id"));
+					modifier = ScaleRegistries.getEntry(ScaleRegistries.SCALE_MODIFIERS, id);
+				}
+				else
+				{
+					modifier = null;
+				}
+				
+				if (modifier != null)
+				{
+					modifierChain = modifierChain.with(modifier);
+				}
+			}
+		}
+		
+		setModifierChain(modifierChain);
+		
+		this.trackModifierChanges = true;
+		
+		startTransition();
+		
+		onUpdate();
+	}
+	
+	public NbtCompound writeNbt(NbtCompound tag)
+	{
+		final ScaleType type = getScaleType();
+		final float defaultBaseScale = type.getDefaultBaseScale();
+		
+		final float scale = getBaseScale();
 		if (scale != defaultBaseScale)
 		{
 			tag.putFloat("scale", scale);
@@ -566,41 +1129,179 @@ public class ScaleData
 			tag.putFloat("target", target);
 		}
 		
-		if (this.scaleTicks != 0)
+		final int ticks = getScaleTicks();
+		if (ticks != 0)
+		{
+			tag.putInt("ticks", ticks);
+		}
+		
+		if (this.totalScaleTicks != type.getDefaultTickDelay())
+		{
+			tag.putInt("total_ticks", this.totalScaleTicks);
+		}
+		
+		final Boolean persistent = getPersistence();
+		if (persistent != null)
+		{
+			tag.putBoolean("persistent", persistent);
+		}
+		
+		final Float2FloatFunction easing = getEasing();
+		if (easing != null)
+		{
+			tag.put("easing", NbtOps.INSTANCE.createString(ScaleRegistries.getId(ScaleRegistries.SCALE_EASINGS, easing).toString()));
+		}
+		
+		final ScaleModifierChain differingModifiers = getDifferingModifiers();
+		if (!differingModifiers.isEmpty())
+		{
+			final NbtList modifiers = new NbtList();
+			
+			for (final ScaleModifier modifier : differingModifiers)
+			{
+				modifiers.add(NbtOps.INSTANCE.createString(ScaleRegistries.getId(ScaleRegistries.SCALE_MODIFIERS, modifier).toString()));
+			}
+			
+			tag.put("baseValueModifiers", modifiers);
+		}
+		
+		return tag;
+	}
+	
+	/**
+	 * Writes the same values as {@link #writeNbt(NbtCompound)} in the packed format of {@link PackedScaleNbtUtils}.
+	 * 
+	 * @param palette Gets the palette index of an identifier, adding it to the palette if needed
+	 * @return false if every value is the default, in which case nothing is written
+	 */
+	@ApiStatus.Internal
+	public boolean writePackedNbt(PacketByteBuf buffer, ToIntFunction<Identifier> palette)
+	{
+		final ScaleType type = getScaleType();
+		final float defaultBaseScale = type.getDefaultBaseScale();
+		
+		final float scale = getBaseScale();
+		final float initial = getInitialScale();
+		final float target = getTargetScale();
+		final int ticks = getScaleTicks();
+		final Boolean persistent = getPersistence();
+		final Float2FloatFunction easing = getEasing();
+		final ScaleModifierChain differingModifiers = getDifferingModifiers();
+		
+		int fields = 0;
+		fields |= scale != defaultBaseScale ? PACKED_BASE_SCALE : 0;
+		fields |= initial != defaultBaseScale ? PACKED_INITIAL_SCALE : 0;
+		fields |= target != defaultBaseScale ? PACKED_TARGET_SCALE : 0;
+		fields |= ticks != 0 ? PACKED_SCALE_TICKS : 0;
+		fields |= this.totalScaleTicks != type.getDefaultTickDelay() ? PACKED_TOTAL_SCALE_TICKS : 0;
+		fields |= persistent != null ? PACKED_PERSISTENCE : 0;
+		fields |= easing != null ? PACKED_EASING : 0;
+		fields |= !differingModifiers.isEmpty() ? PACKED_MODIFIERS : 0;
+		
+		if (fields == 0)
+		{
+			return false;
+		}
+		
+		buffer.writeByte(fields);
+		
+		if ((fields & PACKED_BASE_SCALE) != 0)
 		{
-			tag.putInt("ticks", this.scaleTicks);
+			buffer.writeFloat(scale);
 		}
 		
-		if (this.totalScaleTicks != type.getDefaultTickDelay())
-		{
-			tag.putInt("total_ticks", this.totalScaleTicks);
-		}
+		if ((fields & PACKED_INITIAL_SCALE) != 0)
+		{
+			buffer.writeFloat(initial);
+		}
+		
+		if ((fields & PACKED_TARGET_SCALE) != 0)
+		{
+			buffer.writeFloat(target);
+		}
+		
+		if ((fields & PACKED_SCALE_TICKS) != 0)
+		{
+			buffer.writeVarInt(ticks);
+		}
+		
+		if ((fields & PACKED_TOTAL_SCALE_TICKS) != 0)
+		{
+			buffer.writeVarInt(this.totalScaleTicks);
+		}
+		
+		if ((fields & PACKED_PERSISTENCE) != 0)
+		{
+			buffer.writeBoolean(persistent);
+		}
+		
+		if ((fields & PACKED_EASING) != 0)
+		{
+			buffer.writeVarInt(palette.applyAsInt(ScaleRegistries.getId(ScaleRegistries.SCALE_EASINGS, easing)));
+		}
+		
+		if ((fields & PACKED_MODIFIERS) != 0)
+		{
+			buffer.writeVarInt(differingModifiers.size());
+			
+			for (final ScaleModifier modifier : differingModifiers)
+			{
+				buffer.writeVarInt(palette.applyAsInt(ScaleRegistries.getId(ScaleRegistries.SCALE_MODIFIERS, modifier)));
+			}
+		}
+		
+		return true;
+	}
+	
+	/**
+	 * Reads values written by {@link #writePackedNbt(PacketByteBuf, ToIntFunction)}.
+	 * Values that were left out are read as the defaults they were compared against when written.
+	 * 
+	 * @param palette Gets the identifier at a palette index, or null if the index is invalid
+	 */
+	@ApiStatus.Internal
+	public void readPackedNbt(PacketByteBuf buffer, IntFunction<Identifier> palette)
+	{
+		final ScaleType type = getScaleType();
+		final float defaultBaseScale = type.getDefaultBaseScale();
+		final int fields = buffer.readUnsignedByte();
+		
+		this.transitionStart = NO_TRANSITION;
+		this.baseScale = (fields & PACKED_BASE_SCALE) != 0 ? buffer.readFloat() : defaultBaseScale;
+		this.prevBaseScale = this.baseScale;
+		this.initialScale = (fields & PACKED_INITIAL_SCALE) != 0 ? buffer.readFloat() : defaultBaseScale;
+		this.targetScale = (fields & PACKED_TARGET_SCALE) != 0 ? buffer.readFloat() : defaultBaseScale;
+		
+		this.scaleTicks = (fields & PACKED_SCALE_TICKS) != 0 ? buffer.readVarInt() : 0;
+		this.totalScaleTicks = (fields & PACKED_TOTAL_SCALE_TICKS) != 0 ? buffer.readVarInt() : type.getDefaultTickDelay();
+		
+		this.persistent = (fields & PACKED_PERSISTENCE) != 0 ? buffer.readBoolean() : null;
 		
-		final Boolean persistent = getPersistence();
-		if (persistent != null)
-		{
-			tag.putBoolean("persistent", persistent);
-		}
+		this.easing = (fields & PACKED_EASING) != 0 ? ScaleRegistries.getEntry(ScaleRegistries.SCALE_EASINGS, palette.apply(buffer.readVarInt())) : null;
 		
-		final Float2FloatFunction easing = getEasing();
-		if (easing != null)
-		{
-			tag.put("easing", NbtOps.INSTANCE.createString(ScaleRegistries.getId(ScaleRegistries.SCALE_EASINGS, easing).toString()));
-		}
+		ScaleModifierChain modifierChain = type.getDefaultModifierChain();
 		
-		if (!this.differingModifierCache.isEmpty())
+		if ((fields & PACKED_MODIFIERS) != 0)
 		{
-			final NbtList modifiers = new NbtList();
-			
-			for (final ScaleModifier modifier : this.differingModifierCache)
+			ScaleModifier modifier;
+			for (int i = buffer.readVarInt(); i > 0; i--)
 			{
-				modifiers.add(NbtOps.INSTANCE.createString(ScaleRegistries.getId(ScaleRegistries.SCALE_MODIFIERS, modifier).toString()));
+				modifier = ScaleRegistries.getEntry(ScaleRegistries.SCALE_MODIFIERS, palette.apply(buffer.readVarInt()));
+				
+				if (modifier != null)
+				{
+					modifierChain = modifierChain.with(modifier);
+				}
 			}
-			
-			tag.put("baseValueModifiers", modifiers);
 		}
 		
-		return tag;
+		this.trackModifierChanges = false;
+		setModifierChain(modifierChain);
+		this.trackModifierChanges = true;
+		
+		startTransition();
+		
+		onUpdate();
 	}
 	
 	public ScaleData resetScale()
@@ -619,6 +1320,7 @@ public class ScaleData
 		this.targetScale = defaultBaseScale;
 		this.scaleTicks = 0;
 		this.totalScaleTicks = type.getDefaultTickDelay();
+		this.transitionStart = NO_TRANSITION;
 		this.persistent = null;
 		this.easing = null;
 		
@@ -626,12 +1328,7 @@ public class ScaleData
 		
 		this.trackModifierChanges = false;
 		
-		final SortedSet<ScaleModifier> baseValueModifiers = getBaseValueModifiers();
-		
-		baseValueModifiers.clear();
-		baseValueModifiers.addAll(type.getDefaultBaseValueModifiers());
-		
-		this.differingModifierCache.clear();
+		setModifierChain(type.getDefaultModifierChain());
 		
 		this.trackModifierChanges = true;
 		
@@ -659,7 +1356,7 @@ public class ScaleData
 			return false;
 		}
 		
-		if (this.prevBaseScale != defaultBaseScale)
+		if (getPrevBaseScale() != defaultBaseScale)
 		{
 			return false;
 		}
@@ -674,7 +1371,7 @@ public class ScaleData
 			return false;
 		}
 		
-		if (this.scaleTicks != 0)
+		if (getScaleTicks() != 0)
 		{
 			return false;
 		}
@@ -684,7 +1381,7 @@ public class ScaleData
 			return false;
 		}
 		
-		if (!this.differingModifierCache.isEmpty())
+		if (!getDifferingModifiers().isEmpty())
 		{
 			return false;
 		}
@@ -715,11 +1412,12 @@ public class ScaleData
 			this.prevBaseScale = scaleData.getPrevBaseScale();
 			this.initialScale = scaleData.getInitialScale();
 			this.targetScale = scaleData.getTargetScale();
-			this.scaleTicks = scaleData.scaleTicks;
+			this.scaleTicks = scaleData.getScaleTicks();
 			this.totalScaleTicks = scaleData.totalScaleTicks;
 			this.persistent = scaleData.getPersistence();
 			this.easing = scaleData.getEasing();
 			
+			startTransition();
 			invalidateCachedScales();
 		}
 		
@@ -741,19 +1439,19 @@ public class ScaleData
 	public ScaleData averagedFromScales(ScaleData scaleData, ScaleData... scales)
 	{
 		float scale = scaleData.getBaseScale();
-		float prevScale = scaleData.prevBaseScale;
+		float prevScale = scaleData.getPrevBaseScale();
 		float fromScale = scaleData.getInitialScale();
 		float toScale = scaleData.getTargetScale();
-		int scaleTicks = scaleData.scaleTicks;
+		int scaleTicks = scaleData.getScaleTicks();
 		int totalScaleTicks = scaleData.totalScaleTicks;
 		
 		for (final ScaleData data : scales)
 		{
 			scale += data.getBaseScale();
-			prevScale += data.prevBaseScale;
+			prevScale += data.getPrevBaseScale();
 			fromScale += data.getInitialScale();
 			toScale += data.getTargetScale();
-			scaleTicks += data.scaleTicks;
+			scaleTicks += data.getScaleTicks();
 			totalScaleTicks += data.totalScaleTicks;
 		}
 		
@@ -766,6 +1464,8 @@ public class ScaleData
 		this.scaleTicks = Math.round(scaleTicks / count);
 		this.totalScaleTicks = Math.round(totalScaleTicks / count);
 		
+		startTransition();
+		
 		onUpdate();
 		
 		return this;
@@ -809,6 +1509,454 @@ public class ScaleData
 			Float.floatToIntBits(getScale()) == Float.floatToIntBits(other.getScale());
 	}
 	
+	/**
+	 * Mutable sorted set view of the modifier chain, or of a range of it. Changes swap in a different interned chain instead of modifying it.
+	 * Range views follow the same rules as those of {@link java.util.TreeSet}: they reflect later changes to the chain and reject modifiers outside of their range.
+	 */
+	private final class ModifierChainView extends AbstractSet<ScaleModifier> implements SortedSet<ScaleModifier>
+	{
+		@Nullable
+		private final ScaleModifier fromElement;
+		@Nullable
+		private final ScaleModifier toElement;
+		
+		private ModifierChainView()
+		{
+			this(null, null);
+		}
+		
+		private ModifierChainView(@Nullable ScaleModifier fromElement, @Nullable ScaleModifier toElement)
+		{
+			this.fromElement = fromElement;
+			this.toElement = toElement;
+		}
+		
+		private boolean isFull()
+		{
+			return this.fromElement == null && this.toElement == null;
+		}
+		
+		private boolean inRange(ScaleModifier modifier)
+		{
+			return (this.fromElement == null || this.fromElement.compareTo(modifier) <= 0) && (this.toElement == null || modifier.compareTo(this.toElement) < 0);
+		}
+		
+		/**
+		 * @return Index of the first modifier of the chain that is not sorted before the given bound
+		 */
+		private int indexOf(ScaleModifierChain chain, @Nullable ScaleModifier bound, int fallback)
+		{
+			if (bound == null)
+			{
+				return fallback;
+			}
+			
+			int low = 0;
+			int high = chain.size();
+			int mid;
+			while (low < high)
+			{
+				mid = (low + high) >>> 1;
+				
+				if (chain.get(mid).compareTo(bound) < 0)
+				{
+					low = mid + 1;
+				}
+				else
+				{
+					high = mid;
+				}
+			}
+			
+			return low;
+		}
+		
+		private int start(ScaleModifierChain chain)
+		{
+			return indexOf(chain, this.fromElement, 0);
+		}
+		
+		private int end(ScaleModifierChain chain)
+		{
+			return Math.max(start(chain), indexOf(chain, this.toElement, chain.size()));
+		}
+		
+		@Override
+		public boolean add(ScaleModifier modifier)
+		{
+			if (!inRange(modifier))
+			{
+				throw new IllegalArgumentException("Modifier out of range");
+			}
+			
+			final ScaleModifierChain chain = getModifierChain();
+			final ScaleModifierChain added = chain.with(modifier);
+			
+			if (added != chain)
+			{
+				setModifierChain(added);
+				return true;
+			}
+			
+			return false;
+		}
+		
+		@Override
+		public boolean remove(Object modifier)
+		{
+			if (!(modifier instanceof ScaleModifier) || !inRange((ScaleModifier) modifier))
+			{
+				return false;
+			}
+			
+			final ScaleModifierChain chain = getModifierChain();
+			final ScaleModifierChain removed = chain.without(modifier);
+			
+			if (removed != chain)
+			{
+				setModifierChain(removed);
+				return true;
+			}
+			
+			return false;
+		}
+		
+		@Override
+		public void clear()
+		{
+			if (isFull())
+			{
+				setModifierChain(ScaleModifierChain.EMPTY);
+				return;
+			}
+			
+			final ScaleModifierChain chain = getModifierChain();
+			final int start = start(chain);
+			final int end = end(chain);
+			
+			if (start != end)
+			{
+				final List<ScaleModifier> modifiers = chain.asList();
+				final List<ScaleModifier> kept = new ArrayList<>(modifiers.subList(0, start));
+				kept.addAll(modifiers.subList(end, modifiers.size()));
+				
+				setModifierChain(ScaleModifierChain.of(kept));
+			}
+		}
+		
+		@Override
+		public boolean contains(Object modifier)
+		{
+			return modifier instanceof ScaleModifier && inRange((ScaleModifier) modifier) && getModifierChain().contains(modifier);
+		}
+		
+		@Override
+		public int size()
+		{
+			final ScaleModifierChain chain = getModifierChain();
+			
+			return isFull() ? chain.size() : end(chain) - start(chain);
+		}
+		
+		@Override
+		public Iterator<ScaleModifier> iterator()
+		{
+			final ScaleModifierChain chain = getModifierChain();
+			final int end = end(chain);
+			
+			return new Iterator<ScaleModifier>()
+			{
+				private int next = start(chain);
+				private ScaleModifier last = null;
+				
+				@Override
+				public boolean hasNext()
+				{
+					return next < end;
+				}
+				
+				@Override
+				public ScaleModifier next()
+				{
+					if (!hasNext())
+					{
+						throw new NoSuchElementException();
+					}
+					
+					return last = chain.get(next++);
+				}
+				
+				@Override
+				public void remove()
+				{
+					if (last == null)
+					{
+						throw new IllegalStateException();
+					}
+					
+					ModifierChainView.this.remove(last);
+					last = null;
+				}
+			};
+		}
+		
+		/**
+		 * @return The natural ordering of scale modifiers, which chains are sorted by
+		 */
+		@Override
+		public Comparator<? super ScaleModifier> comparator()
+		{
+			return Comparator.naturalOrder();
+		}
+		
+		@Override
+		public SortedSet<ScaleModifier> subSet(ScaleModifier fromElement, ScaleModifier toElement)
+		{
+			if (fromElement.compareTo(toElement) > 0)
+			{
+				throw new IllegalArgumentException("fromElement > toElement");
+			}
+			
+			return new ModifierChainView(checkBound(fromElement), checkBound(toElement));
+		}
+		
+		@Override
+		public SortedSet<ScaleModifier> headSet(ScaleModifier toElement)
+		{
+			return new ModifierChainView(this.fromElement, checkBound(toElement));
+		}
+		
+		@Override
+		public SortedSet<ScaleModifier> tailSet(ScaleModifier fromElement)
+		{
+			return new ModifierChainView(checkBound(fromElement), this.toElement);
+		}
+		
+		private ScaleModifier checkBound(ScaleModifier bound)
+		{
+			Objects.requireNonNull(bound);
+			
+			if ((this.fromElement != null && bound.compareTo(this.fromElement) < 0) || (this.toElement != null && bound.compareTo(this.toElement) > 0))
+			{
+				throw new IllegalArgumentException("Bound out of range");
+			}
+			
+			return bound;
+		}
+		
+		@Override
+		public ScaleModifier first()
+		{
+			final ScaleModifierChain chain = getModifierChain();
+			final int start = start(chain);
+			
+			if (start == end(chain))
+			{
+				throw new NoSuchElementException();
+			}
+			
+			return chain.get(start);
+		}
+		
+		@Override
+		public ScaleModifier last()
+		{
+			final ScaleModifierChain chain = getModifierChain();
+			final int end = end(chain);
+			
+			if (start(chain) == end)
+			{
+				throw new NoSuchElementException();
+			}
+			
+			return chain.get(end - 1);
+		}
+	}
+	
+	/**
+	 * Values of the synced fields of a scale data at the time they were written to a packet.
+	 */
+	private static final class SyncedValues
+	{
+		private final float baseScale;
+		private final float prevBaseScale;
+		private final float initialScale;
+		private final float targetScale;
+		private final int scaleTicks;
+		private final int totalScaleTicks;
+		private final ScaleModifierChain modifiers;
+		private final Boolean persistent;
+		private final Float2FloatFunction easing;
+		
+		private SyncedValues(ScaleData data)
+		{
+			this.baseScale = data.getBaseScale();
+			this.prevBaseScale = data.getPrevBaseScale();
+			this.initialScale = data.initialScale;
+			this.targetScale = data.targetScale;
+			this.scaleTicks = data.getScaleTicks();
+			this.totalScaleTicks = data.totalScaleTicks;
+			this.modifiers = data.getDifferingModifiers();
+			this.persistent = data.persistent;
+			this.easing = data.easing;
+		}
+		
+		private PacketByteBuf write(PacketByteBuf buffer, int fields)
+		{
+			buffer.writeShort(fields);
+			
+			if ((fields & SYNC_BASE_SCALE) != 0)
+			{
+				buffer.writeFloat(this.baseScale);
+			}
+			
+			if ((fields & SYNC_PREV_BASE_SCALE) != 0)
+			{
+				buffer.writeFloat(this.prevBaseScale);
+			}
+			
+			if ((fields & SYNC_INITIAL_SCALE) != 0)
+			{
+				buffer.writeFloat(this.initialScale);
+			}
+			
+			if ((fields & SYNC_TARGET_SCALE) != 0)
+			{
+				buffer.writeFloat(this.targetScale);
+			}
+			
+			if ((fields & SYNC_SCALE_TICKS) != 0)
+			{
+				buffer.writeVarInt(this.scaleTicks);
+			}
+			
+			if ((fields & SYNC_TOTAL_SCALE_TICKS) != 0)
+			{
+				buffer.writeVarInt(this.totalScaleTicks);
+			}
+			
+			if ((fields & SYNC_MODIFIERS) != 0)
+			{
+				buffer.writeVarInt(this.modifiers.size());
+				
+				for (final ScaleModifier modifier : this.modifiers)
+				{
+					ScalePaletteUtils.writeId(buffer, ScaleRegistries.SCALE_MODIFIERS, modifier);
+				}
+			}
+			
+			if ((fields & SYNC_PERSISTENCE) != 0)
+			{
+				buffer.writeByte(this.persistent == null ? -1 : this.persistent ? 1 : 0);
+			}
+			
+			if ((fields & SYNC_EASING) != 0)
+			{
+				if (this.easing != null)
+				{
+					buffer.writeBoolean(true);
+					ScalePaletteUtils.writeId(buffer, ScaleRegistries.SCALE_EASINGS, this.easing);
+				}
+				else
+				{
+					buffer.writeBoolean(false);
+				}
+			}
+			
+			return buffer;
+		}
+	}
+	
+	/**
+	 * Reusable holder for the values of one scale data read from a scale packet, with identifiers already resolved to registry entries.
+	 */
+	@ApiStatus.Internal
+	public static final class ReceivedValues
+	{
+		private int fields;
+		private float baseScale;
+		private float prevBaseScale;
+		private float initialScale;
+		private float targetScale;
+		private int scaleTicks;
+		private int totalScaleTicks;
+		private ScaleModifier[] modifiers = new ScaleModifier[4];
+		private int modifierCount;
+		private Boolean persistent;
+		private Float2FloatFunction easing;
+		
+		public ReceivedValues read(PacketByteBuf buffer)
+		{
+			this.fields = buffer.readShort();
+			this.modifierCount = 0;
+			this.persistent = null;
+			this.easing = null;
+			
+			if ((this.fields & SYNC_BASE_SCALE) != 0)
+			{
+				this.baseScale = buffer.readFloat();
+			}
+			
+			if ((this.fields & SYNC_PREV_BASE_SCALE) != 0)
+			{
+				this.prevBaseScale = buffer.readFloat();
+			}
+			
+			if ((this.fields & SYNC_INITIAL_SCALE) != 0)
+			{
+				this.initialScale = buffer.readFloat();
+			}
+			
+			if ((this.fields & SYNC_TARGET_SCALE) != 0)
+			{
+				this.targetScale = buffer.readFloat();
+			}
+			
+			if ((this.fields & SYNC_SCALE_TICKS) != 0)
+			{
+				this.scaleTicks = buffer.readVarInt();
+			}
+			
+			if ((this.fields & SYNC_TOTAL_SCALE_TICKS) != 0)
+			{
+				this.totalScaleTicks = buffer.readVarInt();
+			}
+			
+			if ((this.fields & SYNC_MODIFIERS) != 0)
+			{
+				ScaleModifier modifier;
+				for (int i = buffer.readVarInt(); i > 0; i--)
+				{
+					modifier = ScaleRegistries.getEntry(ScaleRegistries.SCALE_MODIFIERS, ScalePaletteUtils.readId(buffer, ScaleRegistries.SCALE_MODIFIERS));
+					
+					if (modifier != null)
+					{
+						if (this.modifierCount == this.modifiers.length)
+						{
+							this.modifiers = Arrays.copyOf(this.modifiers, this.modifierCount * 2);
+						}
+						
+						this.modifiers[this.modifierCount++] = modifier;
+					}
+				}
+			}
+			
+			if ((this.fields & SYNC_PERSISTENCE) != 0)
+			{
+				final byte persistent = buffer.readByte();
+				
+				this.persistent = persistent == -1 ? null : persistent == 1;
+			}
+			
+			if ((this.fields & SYNC_EASING) != 0 && buffer.readBoolean())
+			{
+				this.easing = ScaleRegistries.getEntry(ScaleRegistries.SCALE_EASINGS, ScalePaletteUtils.readId(buffer, ScaleRegistries.SCALE_EASINGS));
+			}
+			
+			return this;
+		}
+	}
+	
 	public static class Builder
 	{
 		private Entity entity = null;
@@ -3,6 +3,7 @@ package virtuoel.pehkui.api;
 public class ScaleModifier implements Comparable<ScaleModifier>
 {
 	private final float priority;
+	private volatile int sortKey = -1;
 	
 	public ScaleModifier()
 	{
@@ -17,6 +18,14 @@ public class ScaleModifier implements Comparable<ScaleModifier>
 	@Override
 	public int compareTo(ScaleModifier o)
 	{
+		final int key = this.sortKey;
+		final int otherKey = o.sortKey;
+		
+		if (key != -1 && otherKey != -1)
+		{
+			return Integer.compare(key, otherKey);
+		}
+		
 		final int c = Float.compare(o.getPriority(), getPriority());
 		
 		return c != 0 ? c :
@@ -26,6 +35,16 @@ public class ScaleModifier implements Comparable<ScaleModifier>
 			);
 	}
 	
+	boolean hasSortKey()
+	{
+		return this.sortKey != -1;
+	}
+	
+	void setSortKey(int sortKey)
+	{
+		this.sortKey = sortKey;
+	}
+	
 	/**
 	 * The priority of this scale modifier.
 	 * Higher priority modifiers are applied before lower priority ones.
@@ -1,10 +1,14 @@
 package virtuoel.pehkui.api;
 
+import java.util.ArrayList;
 import java.util.IdentityHashMap;
 import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.function.Supplier;
 
+import org.jetbrains.annotations.ApiStatus;
+
 import com.google.common.collect.BiMap;
 import com.google.common.collect.HashBiMap;
 import com.google.common.collect.Maps;
@@ -18,6 +22,7 @@ public class ScaleRegistries
 	private static final Map<Map<Identifier, ?>, Identifier> REGISTRY_IDS = new IdentityHashMap<>();
 	private static final Map<Identifier, Supplier<?>> DEFAULT_ENTRIES = new LinkedHashMap<>();
 	private static final Map<Identifier, Identifier> DEFAULT_IDS = new LinkedHashMap<>();
+	private static final Map<Map<Identifier, ?>, RegistryHolder<?>> HOLDERS = new IdentityHashMap<>();
 	
 	public static final BiMap<Identifier, ScaleType> SCALE_TYPES = create("scale_types", "invalid", () -> ScaleTypes.INVALID);
 	public static final BiMap<Identifier, ScaleModifier> SCALE_MODIFIERS = create("scale_modifiers", "identity", () -> ScaleModifiers.IDENTITY);
@@ -25,11 +30,36 @@ public class ScaleRegistries
 	
 	public static <E> E register(Map<Identifier, E> registry, Identifier id, E entry)
 	{
-		return registry.computeIfAbsent(id, i -> entry);
+		final RegistryHolder<E> holder = getHolder(registry);
+		
+		final E registered = holder == null ? registry.computeIfAbsent(id, i -> entry) : holder.register(id, entry);
+		
+		if (registered instanceof ScaleType)
+		{
+			assignIndex((ScaleType) registered);
+		}
+		else if (registered instanceof ScaleModifier && registry == SCALE_MODIFIERS)
+		{
+			assignSortKey((ScaleModifier) registered, id);
+		}
+		
+		return registered;
 	}
 	
 	public static <E> E getEntry(Map<Identifier, E> registry, Identifier id)
 	{
+		final RegistryHolder<E> holder = getHolder(registry);
+		
+		if (holder != null)
+		{
+			final E entry = holder.getSnapshot().getEntry(id);
+			
+			if (entry != null)
+			{
+				return entry;
+			}
+		}
+		
 		return registry.get(id);
 	}
 	
@@ -40,9 +70,128 @@ public class ScaleRegistries
 	
 	public static <E> Identifier getId(BiMap<Identifier, E> registry, E entry)
 	{
+		final RegistryHolder<E> holder = getHolder(registry);
+		
+		if (holder != null)
+		{
+			final Identifier id = holder.getSnapshot().getId(entry);
+			
+			if (id != null)
+			{
+				return id;
+			}
+		}
+		
 		return registry.inverse().get(entry);
 	}
 	
+	/**
+	 * Gets an immutable snapshot of the given registry, rebuilding it first if entries were registered since the last one was taken.
+	 * Snapshots are safe to read from any thread without locking, so hot paths should prefer them over the registry maps.
+	 * 
+	 * @return Snapshot of the registry's current contents
+	 */
+	public static <E> ScaleRegistrySnapshot<E> getSnapshot(BiMap<Identifier, E> registry)
+	{
+		final RegistryHolder<E> holder = getHolder(registry);
+		
+		if (holder == null)
+		{
+			throw new IllegalArgumentException("Unknown scale registry");
+		}
+		
+		return holder.getSnapshot();
+	}
+	
+	private static volatile boolean frozen = false;
+	
+	/**
+	 * Publishes snapshots of all registries. Entries registered afterwards are still accepted,
+	 * but cause the affected registry's snapshot to be rebuilt on its next access.
+	 */
+	public static void freeze()
+	{
+		for (final RegistryHolder<?> holder : HOLDERS.values())
+		{
+			holder.getSnapshot();
+		}
+		
+		frozen = true;
+	}
+	
+	public static boolean isFrozen()
+	{
+		return frozen;
+	}
+	
+	@SuppressWarnings("unchecked")
+	private static <E> RegistryHolder<E> getHolder(Map<Identifier, E> registry)
+	{
+		return (RegistryHolder<E>) HOLDERS.get(registry);
+	}
+	
+	private static int scaleTypeIndexCount;
+	
+	static synchronized void assignIndex(ScaleType type)
+	{
+		if (!type.hasIndex())
+		{
+			type.setIndex(scaleTypeIndexCount++);
+		}
+	}
+	
+	/**
+	 * @return Amount of indices handed out to scale types so far
+	 */
+	@ApiStatus.Internal
+	public static synchronized int getScaleTypeIndexCount()
+	{
+		return scaleTypeIndexCount;
+	}
+	
+	private static final List<ScaleModifier> SORTED_MODIFIERS = new ArrayList<>();
+	private static final List<Identifier> SORTED_MODIFIER_IDS = new ArrayList<>();
+	
+	/**
+	 * Inserts the given modifier into the total order of registered modifiers, sorted by descending priority and then by id,
+	 * and renumbers the sort keys of all modifiers after it. Relative order of already registered modifiers never changes.
+	 */
+	static synchronized void assignSortKey(ScaleModifier modifier, Identifier id)
+	{
+		if (modifier.hasSortKey())
+		{
+			return;
+		}
+		
+		int low = 0;
+		int high = SORTED_MODIFIERS.size();
+		
+		while (low < high)
+		{
+			final int mid = (low + high) >>> 1;
+			final ScaleModifier other = SORTED_MODIFIERS.get(mid);
+			int c = Float.compare(modifier.getPriority(), other.getPriority());
+			c = c != 0 ? c : SORTED_MODIFIER_IDS.get(mid).compareTo(id);
+			
+			if (c < 0)
+			{
+				low = mid + 1;
+			}
+			else
+			{
+				high = mid;
+			}
+		}
+		
+		SORTED_MODIFIERS.add(low, modifier);
+		SORTED_MODIFIER_IDS.add(low, id);
+		
+		for (int i = SORTED_MODIFIERS.size() - 1; i >= low; i--)
+		{
+			SORTED_MODIFIERS.get(i).setSortKey(i);
+		}
+	}
+	
 	private static <E> BiMap<Identifier, E> create(String id, String defaultPath, Supplier<E> defaultEntry)
 	{
 		return create(Pehkui.id(id), Pehkui.id(defaultPath), defaultEntry);
@@ -52,11 +201,96 @@ public class ScaleRegistries
 	{
 		final BiMap<Identifier, E> registry = Maps.synchronizedBiMap(HashBiMap.create());
 		REGISTRY_IDS.put(registry, id);
+		HOLDERS.put(registry, new RegistryHolder<>(id, registry));
 		DEFAULT_IDS.put(id, defaultId);
 		DEFAULT_ENTRIES.put(id, defaultEntry);
 		return registry;
 	}
 	
+	private static final class RegistryHolder<E>
+	{
+		private final Identifier id;
+		private final BiMap<Identifier, E> registry;
+		private final List<Identifier> registrationOrder = new ArrayList<>();
+		private volatile int version = 0;
+		private volatile ScaleRegistrySnapshot<E> snapshot = null;
+		
+		private RegistryHolder(Identifier id, BiMap<Identifier, E> registry)
+		{
+			this.id = id;
+			this.registry = registry;
+		}
+		
+		private synchronized E register(Identifier id, E entry)
+		{
+			final E existing = registry.get(id);
+			
+			if (existing != null)
+			{
+				return existing;
+			}
+			
+			registry.put(id, entry);
+			registrationOrder.add(id);
+			
+			if (frozen)
+			{
+				Pehkui.LOGGER.warn("Registered \"{}\" to scale registry \"{}\" after it was frozen. Its snapshot will be rebuilt.", id, this.id);
+			}
+			
+			version++;
+			
+			return entry;
+		}
+		
+		private ScaleRegistrySnapshot<E> getSnapshot()
+		{
+			final ScaleRegistrySnapshot<E> current = snapshot;
+			
+			if (current != null && current.getVersion() == version)
+			{
+				return current;
+			}
+			
+			return rebuild();
+		}
+		
+		@SuppressWarnings("unchecked")
+		private synchronized ScaleRegistrySnapshot<E> rebuild()
+		{
+			final int currentVersion = version;
+			
+			if (snapshot != null && snapshot.getVersion() == currentVersion)
+			{
+				return snapshot;
+			}
+			
+			final Identifier[] ids;
+			final Object[] entries;
+			
+			synchronized (registry)
+			{
+				for (final Identifier id : registry.keySet())
+				{
+					if (!registrationOrder.contains(id))
+					{
+						registrationOrder.add(id);
+					}
+				}
+				
+				ids = registrationOrder.toArray(new Identifier[0]);
+				entries = new Object[ids.length];
+				
+				for (int i = 0; i < ids.length; i++)
+				{
+					entries[i] = registry.get(ids[i]);
+				}
+			}
+			
+			return snapshot = new ScaleRegistrySnapshot<>(currentVersion, ids, (E[]) entries);
+		}
+	}
+	
 	private ScaleRegistries()
 	{
 		
@@ -0,0 +1,94 @@
+package virtuoel.pehkui.api;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import org.jetbrains.annotations.Nullable;
+
+import it.unimi.dsi.fastutil.objects.Object2ObjectOpenHashMap;
+import it.unimi.dsi.fastutil.objects.Reference2IntOpenHashMap;
+import net.minecraft.util.Identifier;
+
+/**
+ * Immutable view of a scale registry at a given version.
+ * Entries are ordered by registration, so an entry's index stays the same across rebuilds of the same registry.
+ * <p>Snapshots can be read from any thread without locking.
+ *
+ * @see {@link ScaleRegistries#getSnapshot(com.google.common.collect.BiMap)}
+ */
+public final class ScaleRegistrySnapshot<E>
+{
+	private final int version;
+	private final Identifier[] ids;
+	private final E[] entries;
+	private final Object2ObjectOpenHashMap<Identifier, E> entriesById;
+	private final Reference2IntOpenHashMap<E> indices;
+	private final List<E> entryList;
+	
+	ScaleRegistrySnapshot(int version, Identifier[] ids, E[] entries)
+	{
+		this.version = version;
+		this.ids = ids;
+		this.entries = entries;
+		this.entriesById = new Object2ObjectOpenHashMap<>(entries.length);
+		this.indices = new Reference2IntOpenHashMap<>(entries.length);
+		this.indices.defaultReturnValue(-1);
+		
+		for (int i = 0; i < entries.length; i++)
+		{
+			this.entriesById.put(ids[i], entries[i]);
+			this.indices.put(entries[i], i);
+		}
+		
+		this.entryList = Collections.unmodifiableList(Arrays.asList(entries));
+	}
+	
+	public int getVersion()
+	{
+		return version;
+	}
+	
+	public int size()
+	{
+		return entries.length;
+	}
+	
+	public E get(int index)
+	{
+		return entries[index];
+	}
+	
+	public Identifier getId(int index)
+	{
+		return ids[index];
+	}
+	
+	/**
+	 * @return Index of the given entry, or -1 if it was not registered when this snapshot was taken
+	 */
+	public int indexOf(E entry)
+	{
+		return indices.getInt(entry);
+	}
+	
+	public @Nullable Identifier getId(E entry)
+	{
+		final int index = indices.getInt(entry);
+		
+		return index == -1 ? null : ids[index];
+	}
+	
+	public @Nullable E getEntry(Identifier id)
+	{
+		return entriesById.get(id);
+	}
+	
+	/**
+	 * @return Unmodifiable list of all entries in registration order
+	 */
+	public List<E> getEntries()
+	{
+		return entryList;
+	}
+}
@@ -1,7 +1,9 @@
 package virtuoel.pehkui.api;
 
+import java.util.AbstractSet;
 import java.util.Collection;
 import java.util.Collections;
+import java.util.Iterator;
 import java.util.Set;
 import java.util.function.ToDoubleBiFunction;
 
@@ -13,6 +15,7 @@ import net.fabricmc.fabric.api.event.Event;
 import net.fabricmc.fabric.api.event.EventFactory;
 import net.minecraft.entity.Entity;
 import virtuoel.pehkui.util.PehkuiEntityExtensions;
+import virtuoel.pehkui.util.ScaleModifierChain;
 import virtuoel.pehkui.util.ScaleUtils;
 
 public class ScaleType
@@ -24,7 +27,7 @@ public class ScaleType
 	{
 		this.defaultBaseScale = builder.defaultBaseScale;
 		this.defaultTickDelay = builder.defaultTickDelay;
-		this.defaultBaseValueModifiers = builder.defaultBaseValueModifiers;
+		this.defaultBaseValueModifiers = new DefaultModifierSet(builder.defaultBaseValueModifiers);
 		this.baseScaleClampFunction = builder.baseScaleClampFunction;
 		this.targetScaleClampFunction = builder.targetScaleClampFunction;
 		this.defaultPersistence = builder.defaultPersistence;
@@ -37,6 +40,34 @@ public class ScaleType
 		return ((PehkuiEntityExtensions) entity).pehkui_getScaleData(this);
 	}
 	
+	private int index = -1;
+	
+	/**
+	 * Dense index of this type, used to look up per-entity scale data from an array.
+	 * Registered types are indexed in registration order. Types that were never registered get the next free index on first use.
+	 * @return Index of this type
+	 */
+	@ApiStatus.Internal
+	public int getIndex()
+	{
+		if (index == -1)
+		{
+			ScaleRegistries.assignIndex(this);
+		}
+		
+		return index;
+	}
+	
+	boolean hasIndex()
+	{
+		return index != -1;
+	}
+	
+	void setIndex(int index)
+	{
+		this.index = index;
+	}
+	
 	private boolean affectsDimensions;
 	
 	@ApiStatus.Internal
@@ -56,19 +87,19 @@ public class ScaleType
 	{
 		return defaultPersistence;
 	}
-
+	
 	private Float2FloatFunction defaultEasing;
-
+	
 	public void setDefaultEasing(Float2FloatFunction defaultEasing)
 	{
 		this.defaultEasing = defaultEasing;
 	}
-
+	
 	public Float2FloatFunction getDefaultEasing()
 	{
 		return defaultEasing;
 	}
-
+	
 	private float defaultBaseScale;
 	
 	public final float getDefaultBaseScale()
@@ -108,6 +139,110 @@ public class ScaleType
 		return defaultBaseValueModifiers;
 	}
 	
+	private volatile ScaleModifierChain defaultModifierChain = null;
+	
+	/**
+	 * Sorted set of the default modifiers that drops the cached chain on every change.
+	 * All removals, including the bulk ones inherited from {@link AbstractSet}, go through {@link #remove(Object)} or the iterator.
+	 */
+	private final class DefaultModifierSet extends AbstractSet<ScaleModifier>
+	{
+		private final Set<ScaleModifier> modifiers;
+		
+		private DefaultModifierSet(Collection<ScaleModifier> modifiers)
+		{
+			this.modifiers = new ObjectRBTreeSet<>(modifiers);
+		}
+		
+		@Override
+		public boolean add(ScaleModifier modifier)
+		{
+			if (this.modifiers.add(modifier))
+			{
+				ScaleType.this.defaultModifierChain = null;
+				return true;
+			}
+			
+			return false;
+		}
+		
+		@Override
+		public boolean remove(Object modifier)
+		{
+			if (this.modifiers.remove(modifier))
+			{
+				ScaleType.this.defaultModifierChain = null;
+				return true;
+			}
+			
+			return false;
+		}
+		
+		@Override
+		public void clear()
+		{
+			this.modifiers.clear();
+			ScaleType.this.defaultModifierChain = null;
+		}
+		
+		@Override
+		public boolean contains(Object modifier)
+		{
+			return this.modifiers.contains(modifier);
+		}
+		
+		@Override
+		public int size()
+		{
+			return this.modifiers.size();
+		}
+		
+		@Override
+		public Iterator<ScaleModifier> iterator()
+		{
+			final Iterator<ScaleModifier> iterator = this.modifiers.iterator();
+			
+			return new Iterator<ScaleModifier>()
+			{
+				@Override
+				public boolean hasNext()
+				{
+					return iterator.hasNext();
+				}
+				
+				@Override
+				public ScaleModifier next()
+				{
+					return iterator.next();
+				}
+				
+				@Override
+				public void remove()
+				{
+					iterator.remove();
+					ScaleType.this.defaultModifierChain = null;
+				}
+			};
+		}
+	}
+	
+	/**
+	 * @return Interned chain of the current default modifiers
+	 */
+	@ApiStatus.Internal
+	public ScaleModifierChain getDefaultModifierChain()
+	{
+		ScaleModifierChain chain = defaultModifierChain;
+		
+		if (chain == null)
+		{
+			chain = ScaleModifierChain.of(defaultBaseValueModifiers);
+			defaultModifierChain = chain;
+		}
+		
+		return chain;
+	}
+	
 	public static class Builder
 	{
 		private Set<ScaleModifier> defaultBaseValueModifiers = new ObjectRBTreeSet<>();
@@ -211,7 +346,7 @@ public class ScaleType
 			this.defaultPersistence = defaultPersistence;
 			return this;
 		}
-
+		
 		public Builder defaultEasing(Float2FloatFunction defaultEasing)
 		{
 			this.defaultEasing = defaultEasing;
@@ -247,7 +382,7 @@ public class ScaleType
 			return type;
 		}
 		
-		private static void calculateDimensions(ScaleData s)
+		static void calculateDimensions(ScaleData s)
 		{
 			final Entity e = s.getEntity();
 			
@@ -270,12 +405,14 @@ public class ScaleType
 				
 				if (e != null)
 				{
+					final PehkuiEntityExtensions en = (PehkuiEntityExtensions) e;
+					
 					ScaleData data;
-					for (ScaleType scaleType : ScaleRegistries.SCALE_TYPES.values())
+					for (ScaleType scaleType : ScaleRegistries.getSnapshot(ScaleRegistries.SCALE_TYPES).getEntries())
 					{
-						data = scaleType.getScaleData(e);
+						data = en.pehkui_getScaleDataIfPresent(scaleType);
 						
-						if (!Collections.disjoint(modifiers, data.getBaseValueModifiers()))
+						if (data != null && !Collections.disjoint(modifiers, data.getBaseValueModifiers()))
 						{
 							data.markForSync(true);
 						}
@@ -306,11 +443,25 @@ public class ScaleType
 		return postTickEvent;
 	}
 	
+	/**
+	 * Checks whether any callbacks are registered to the pre or post tick events.
+	 * Scale data of types without tick listeners only gets ticked while it is changing.
+	 * 
+	 * @return true if tick events of this type have listeners
+	 */
+	@ApiStatus.Internal
+	public boolean hasTickListeners()
+	{
+		return preTickEvent.invoker() != EMPTY_CALLBACK || postTickEvent.invoker() != EMPTY_CALLBACK;
+	}
+	
+	private static final ScaleEventCallback EMPTY_CALLBACK = data -> {};
+	
 	private static Event<ScaleEventCallback> createScaleEvent()
 	{
 		return EventFactory.createArrayBacked(
 			ScaleEventCallback.class,
-			data -> {},
+			EMPTY_CALLBACK,
 			(callbacks) -> (data) ->
 			{
 				for (ScaleEventCallback callback : callbacks)
@@ -3,8 +3,17 @@ package virtuoel.pehkui.api;
 import java.util.function.DoubleBinaryOperator;
 import java.util.function.Supplier;
 
+import org.jetbrains.annotations.ApiStatus;
+import org.jetbrains.annotations.Nullable;
+
+import net.minecraft.entity.Entity;
+import virtuoel.pehkui.util.ScaleUtils;
+
 public class TypedScaleModifier extends ScaleModifier
 {
+	public static final DoubleBinaryOperator MULTIPLY = (modified, typed) -> modified * typed;
+	public static final DoubleBinaryOperator DIVIDE = (modified, typed) -> modified / typed;
+	
 	private final Supplier<ScaleType> type;
 	private final DoubleBinaryOperator operation;
 	
@@ -23,12 +32,12 @@ public class TypedScaleModifier extends ScaleModifier
 	
 	public TypedScaleModifier(final Supplier<ScaleType> type)
 	{
-		this(type, (modified, typed) -> modified * typed);
+		this(type, MULTIPLY);
 	}
 	
 	public TypedScaleModifier(final Supplier<ScaleType> type, final float priority)
 	{
-		this(type, (modified, typed) -> modified * typed, priority);
+		this(type, MULTIPLY, priority);
 	}
 	
 	public ScaleType getType()
@@ -36,19 +45,41 @@ public class TypedScaleModifier extends ScaleModifier
 		return type.get();
 	}
 	
+	@ApiStatus.Internal
+	public DoubleBinaryOperator getOperation()
+	{
+		return operation;
+	}
+	
 	@Override
 	public float modifyScale(final ScaleData scaleData, float modifiedScale, final float delta)
 	{
-		final ScaleType type = getType();
-		
-		return type == scaleData.getScaleType() ? modifiedScale : (float) operation.applyAsDouble(modifiedScale, type.getScaleData(scaleData.getEntity()).getScale(delta));
+		return modifyScale(scaleData.getEntity(), scaleData, modifiedScale, delta);
 	}
 	
 	@Override
 	public float modifyPrevScale(final ScaleData scaleData, float modifiedScale)
+	{
+		return modifyPrevScale(scaleData.getEntity(), scaleData, modifiedScale);
+	}
+	
+	/**
+	 * Variant of {@link #modifyScale(ScaleData, float, float)} which reads the typed scale from the given entity,
+	 * allowing shared scale data without an entity to be evaluated on behalf of one.
+	 */
+	@ApiStatus.Internal
+	public float modifyScale(@Nullable final Entity entity, final ScaleData scaleData, float modifiedScale, final float delta)
+	{
+		final ScaleType type = getType();
+		
+		return type == scaleData.getScaleType() ? modifiedScale : (float) operation.applyAsDouble(modifiedScale, ScaleUtils.getTypedScale(entity, type, delta));
+	}
+	
+	@ApiStatus.Internal
+	public float modifyPrevScale(@Nullable final Entity entity, final ScaleData scaleData, float modifiedScale)
 	{
 		final ScaleType type = getType();
 		
-		return type == scaleData.getScaleType() ? modifiedScale : (float) operation.applyAsDouble(modifiedScale, type.getScaleData(scaleData.getEntity()).getPrevScale());
+		return type == scaleData.getScaleType() ? modifiedScale : (float) operation.applyAsDouble(modifiedScale, ScaleUtils.getTypedPrevScale(entity, type));
 	}
 }
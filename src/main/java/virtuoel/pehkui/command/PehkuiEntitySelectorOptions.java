@@ -1,10 +1,12 @@
 package virtuoel.pehkui.command;
 
+import java.util.function.Predicate;
+
 import com.mojang.brigadier.exceptions.CommandSyntaxException;
 
 import net.minecraft.command.EntitySelectorReader;
+import net.minecraft.entity.Entity;
 import net.minecraft.nbt.NbtCompound;
-import net.minecraft.nbt.NbtHelper;
 import net.minecraft.nbt.StringNbtReader;
 import net.minecraft.predicate.NumberRange.FloatRange;
 import net.minecraft.text.Text;
@@ -17,7 +19,6 @@ import virtuoel.pehkui.command.argument.ScaleTypeArgumentType;
 import virtuoel.pehkui.mixin.EntitySelectorOptionsInvoker;
 import virtuoel.pehkui.util.CommandUtils;
 import virtuoel.pehkui.util.I18nUtils;
-import virtuoel.pehkui.util.PehkuiEntityExtensions;
 import virtuoel.pehkui.util.PehkuiEntitySelectorReaderExtensions;
 
 public class PehkuiEntitySelectorOptions
@@ -62,12 +63,8 @@ public class PehkuiEntitySelectorOptions
 			{
 				final boolean negated = r.readNegationCharacter();
 				final NbtCompound parsed = (new StringNbtReader(r.getReader())).parseCompound();
-				r.setPredicate(entity ->
-				{
-					final NbtCompound nbt = ((PehkuiEntityExtensions) entity).pehkui_writeScaleNbt(new NbtCompound());
-					
-					return NbtHelper.matches(parsed, nbt, true) != negated;
-				});
+				final Predicate<Entity> predicate = ScaleNbtPredicate.compile(parsed);
+				r.setPredicate(negated ? predicate.negate() : predicate);
 			},
 			reader -> true,
 			SCALE_NBT_DESCRIPTION
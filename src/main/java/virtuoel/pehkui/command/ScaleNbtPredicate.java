@@ -0,0 +1,313 @@
+package virtuoel.pehkui.command;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Predicate;
+
+import org.jetbrains.annotations.Nullable;
+
+import com.google.common.collect.BiMap;
+
+import it.unimi.dsi.fastutil.floats.Float2FloatFunction;
+import net.minecraft.entity.Entity;
+import net.minecraft.nbt.NbtByte;
+import net.minecraft.nbt.NbtCompound;
+import net.minecraft.nbt.NbtElement;
+import net.minecraft.nbt.NbtFloat;
+import net.minecraft.nbt.NbtInt;
+import net.minecraft.nbt.NbtList;
+import net.minecraft.nbt.NbtString;
+import net.minecraft.util.Identifier;
+import virtuoel.pehkui.Pehkui;
+import virtuoel.pehkui.api.ScaleData;
+import virtuoel.pehkui.api.ScaleModifier;
+import virtuoel.pehkui.api.ScaleRegistries;
+import virtuoel.pehkui.api.ScaleType;
+import virtuoel.pehkui.util.PehkuiEntityExtensions;
+import virtuoel.pehkui.util.ScaleModifierChain;
+
+/**
+ * Compiles the NBT pattern of the {@code pehkui:scale_nbt} selector option into checks on scale data,
+ * so that entities can be matched without writing their scales to NBT.
+ * <p>Matches the same entities as comparing the pattern against the compound format of {@link PehkuiEntityExtensions#pehkui_writeScaleNbt(NbtCompound)}
+ * with {@link net.minecraft.nbt.NbtHelper#matches(NbtElement, NbtElement, boolean)}, regardless of which format is used for saving.
+ * Parts of the pattern that such NBT could never contain compile to predicates that never match.
+ */
+public class ScaleNbtPredicate
+{
+	private static final String SCALE_DATA_KEY = Pehkui.MOD_ID + ":scale_data_types";
+	
+	public static Predicate<Entity> compile(NbtCompound pattern)
+	{
+		if (pattern.isEmpty())
+		{
+			return entity -> true;
+		}
+		
+		if (pattern.getSize() != 1 || !(pattern.get(SCALE_DATA_KEY) instanceof NbtCompound))
+		{
+			return entity -> false;
+		}
+		
+		final NbtCompound typePatterns = pattern.getCompound(SCALE_DATA_KEY);
+		
+		if (typePatterns.isEmpty())
+		{
+			return ScaleNbtPredicate::hasSavedScales;
+		}
+		
+		final List<ScaleType> types = new ArrayList<>();
+		final List<Predicate<ScaleData>> predicates = new ArrayList<>();
+		
+		for (final String key : typePatterns.getKeys())
+		{
+			final ScaleType type = getEntry(ScaleRegistries.SCALE_TYPES, key);
+			final NbtElement typePattern = typePatterns.get(key);
+			
+			if (type == null || !(typePattern instanceof NbtCompound))
+			{
+				return entity -> false;
+			}
+			
+			final Predicate<ScaleData> predicate = compileType(type, (NbtCompound) typePattern);
+			
+			if (predicate == null)
+			{
+				return entity -> false;
+			}
+			
+			types.add(type);
+			predicates.add(predicate);
+		}
+		
+		final ScaleType[] typeArray = types.toArray(new ScaleType[0]);
+		@SuppressWarnings("unchecked")
+		final Predicate<ScaleData>[] predicateArray = predicates.toArray(new Predicate[0]);
+		
+		return entity ->
+		{
+			final PehkuiEntityExtensions e = (PehkuiEntityExtensions) entity;
+			
+			if (!e.pehkui_hasNonDefaultScales() || e.pehkui_shouldIgnoreScaleNbt())
+			{
+				return false;
+			}
+			
+			ScaleData scaleData;
+			for (int i = 0; i < typeArray.length; i++)
+			{
+				scaleData = e.pehkui_getScaleDataIfPresent(typeArray[i]);
+				
+				if (scaleData == null || !predicateArray[i].test(scaleData))
+				{
+					return false;
+				}
+			}
+			
+			return true;
+		};
+	}
+	
+	/**
+	 * @return Predicate matching scale data whose saved NBT matches the pattern, or null if no scale data could match it
+	 */
+	private static @Nullable Predicate<ScaleData> compileType(ScaleType type, NbtCompound pattern)
+	{
+		if (pattern.isEmpty())
+		{
+			return ScaleNbtPredicate::hasSavedValues;
+		}
+		
+		final float defaultBaseScale = type.getDefaultBaseScale();
+		final int defaultTickDelay = type.getDefaultTickDelay();
+		
+		Predicate<ScaleData> predicate = scaleData -> true;
+		
+		for (final String key : pattern.getKeys())
+		{
+			final NbtElement value = pattern.get(key);
+			final Predicate<ScaleData> field;
+			
+			switch (key)
+			{
+				case "scale":
+				case "initial":
+				case "target":
+				{
+					if (!(value instanceof NbtFloat) || ((NbtFloat) value).floatValue() == defaultBaseScale)
+					{
+						return null;
+					}
+					
+					final float expected = ((NbtFloat) value).floatValue();
+					
+					if (key.equals("scale"))
+					{
+						field = scaleData -> scaleData.getBaseScale() == expected;
+					}
+					else if (key.equals("initial"))
+					{
+						field = scaleData -> scaleData.getInitialScale() == expected;
+					}
+					else
+					{
+						field = scaleData -> scaleData.getTargetScale() == expected;
+					}
+					
+					break;
+				}
+				case "ticks":
+				{
+					if (!(value instanceof NbtInt) || ((NbtInt) value).intValue() == 0)
+					{
+						return null;
+					}
+					
+					final int expected = ((NbtInt) value).intValue();
+					field = scaleData -> scaleData.getScaleTicks() == expected;
+					break;
+				}
+				case "total_ticks":
+				{
+					if (!(value instanceof NbtInt) || ((NbtInt) value).intValue() == defaultTickDelay)
+					{
+						return null;
+					}
+					
+					final int expected = ((NbtInt) value).intValue();
+					field = scaleData -> scaleData.getScaleTickDelay() == expected;
+					break;
+				}
+				case "persistent":
+				{
+					if (!(value instanceof NbtByte) || (((NbtByte) value).byteValue() & ~1) != 0)
+					{
+						return null;
+					}
+					
+					final Boolean expected = ((NbtByte) value).byteValue() != 0;
+					field = scaleData -> expected.equals(scaleData.getPersistence());
+					break;
+				}
+				case "easing":
+				{
+					if (!(value instanceof NbtString))
+					{
+						return null;
+					}
+					
+					final Float2FloatFunction expected = getEntry(ScaleRegistries.SCALE_EASINGS, value.asString());
+					
+					if (expected == null)
+					{
+						return null;
+					}
+					
+					field = scaleData -> scaleData.getEasing() == expected;
+					break;
+				}
+				case "baseValueModifiers":
+				{
+					if (!(value instanceof NbtList) || ((NbtList) value).isEmpty())
+					{
+						return null;
+					}
+					
+					final NbtList list = (NbtList) value;
+					final List<ScaleModifier> expected = new ArrayList<>(list.size());
+					
+					for (int i = 0; i < list.size(); i++)
+					{
+						final NbtElement element = list.get(i);
+						final ScaleModifier modifier = element instanceof NbtString ? getEntry(ScaleRegistries.SCALE_MODIFIERS, element.asString()) : null;
+						
+						if (modifier == null)
+						{
+							return null;
+						}
+						
+						expected.add(modifier);
+					}
+					
+					field = scaleData ->
+					{
+						final ScaleModifierChain differing = scaleData.getModifierChain().differenceFrom(type.getDefaultModifierChain());
+						
+						for (final ScaleModifier modifier : expected)
+						{
+							if (!differing.contains(modifier))
+							{
+								return false;
+							}
+						}
+						
+						return true;
+					};
+					break;
+				}
+				default:
+					return null;
+			}
+			
+			predicate = predicate.and(field);
+		}
+		
+		return predicate;
+	}
+	
+	private static boolean hasSavedScales(Entity entity)
+	{
+		final PehkuiEntityExtensions e = (PehkuiEntityExtensions) entity;
+		
+		if (!e.pehkui_hasNonDefaultScales() || e.pehkui_shouldIgnoreScaleNbt())
+		{
+			return false;
+		}
+		
+		for (final ScaleData scaleData : e.pehkui_getScaleDataArray())
+		{
+			if (scaleData != null && hasSavedValues(scaleData))
+			{
+				return true;
+			}
+		}
+		
+		return false;
+	}
+	
+	/**
+	 * @return true if {@link ScaleData#writeNbt(NbtCompound)} would write any values
+	 */
+	private static boolean hasSavedValues(ScaleData scaleData)
+	{
+		final ScaleType type = scaleData.getScaleType();
+		final float defaultBaseScale = type.getDefaultBaseScale();
+		
+		return scaleData.getBaseScale() != defaultBaseScale
+			|| scaleData.getInitialScale() != defaultBaseScale
+			|| scaleData.getTargetScale() != defaultBaseScale
+			|| scaleData.getScaleTicks() != 0
+			|| scaleData.getScaleTickDelay() != type.getDefaultTickDelay()
+			|| scaleData.getPersistence() != null
+			|| scaleData.getEasing() != null
+			|| !scaleData.getModifierChain().differenceFrom(type.getDefaultModifierChain()).isEmpty();
+	}
+	
+	/**
+	 * Looks up a registry entry by the exact identifier string it is saved as, so that unqualified or differently formatted ids don't match.
+	 */
+	private static @Nullable <E> E getEntry(BiMap<Identifier, E> registry, String id)
+	{
+		final Identifier parsed = Identifier.tryParse(id);
+		final E entry = parsed == null ? null : ScaleRegistries.getEntry(registry, parsed);
+		
+		if (entry == null)
+		{
+			return null;
+		}
+		
+		final Identifier entryId = ScaleRegistries.getId(registry, entry);
+		
+		return entryId != null && entryId.toString().equals(id) ? entry : null;
+	}
+}
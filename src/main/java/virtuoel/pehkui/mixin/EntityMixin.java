@@ -1,7 +1,8 @@
 package virtuoel.pehkui.mixin;
 
+import java.util.Arrays;
 import java.util.Map;
-import java.util.Map.Entry;
+import java.util.Set;
 
 import org.spongepowered.asm.mixin.Mixin;
 import org.spongepowered.asm.mixin.Shadow;
@@ -16,7 +17,7 @@ import org.spongepowered.asm.mixin.injection.callback.CallbackInfo;
 import org.spongepowered.asm.mixin.injection.callback.CallbackInfoReturnable;
 import org.spongepowered.asm.mixin.injection.invoke.arg.Args;
 
-import it.unimi.dsi.fastutil.objects.Object2ObjectOpenHashMap;
+import it.unimi.dsi.fastutil.objects.ReferenceArraySet;
 import net.fabricmc.fabric.api.util.NbtType;
 import net.minecraft.entity.Entity;
 import net.minecraft.entity.EntityDimensions;
@@ -24,14 +25,18 @@ import net.minecraft.entity.EntityPose;
 import net.minecraft.entity.ItemEntity;
 import net.minecraft.entity.MovementType;
 import net.minecraft.nbt.NbtCompound;
+import net.minecraft.network.Packet;
 import net.minecraft.util.Identifier;
 import net.minecraft.util.math.Vec3d;
 import virtuoel.pehkui.Pehkui;
+import virtuoel.pehkui.api.PehkuiConfig;
 import virtuoel.pehkui.api.ScaleData;
 import virtuoel.pehkui.api.ScaleRegistries;
 import virtuoel.pehkui.api.ScaleType;
 import virtuoel.pehkui.server.command.DebugCommand;
+import virtuoel.pehkui.util.PackedScaleNbtUtils;
 import virtuoel.pehkui.util.PehkuiEntityExtensions;
+import virtuoel.pehkui.util.ScaleDataArrayMap;
 import virtuoel.pehkui.util.ScaleUtils;
 
 @Mixin(Entity.class)
@@ -40,9 +45,19 @@ public abstract class EntityMixin implements PehkuiEntityExtensions
 	@Shadow boolean onGround;
 	@Shadow boolean firstUpdate;
 	
-	private Map<ScaleType, ScaleData> pehkui_scaleTypes = new Object2ObjectOpenHashMap<>();
+	/**
+	 * Scale data indexed by {@link ScaleType#getIndex()}.
+	 * Lookups are lock-free and may happen from any thread. Creation and replacement are serialized per entity
+	 * and publish a new array, so readers see either no data or fully constructed data.
+	 * Mutating the scale data itself is confined to the thread ticking this entity.
+	 */
+	private volatile ScaleData[] pehkui_scaleData = ScaleData.EMPTY_ARRAY;
+	private Set<ScaleType> pehkui_constructingScaleTypes = null;
 	private boolean pehkui_shouldSyncScales = false;
+	private Packet<?> pehkui_trackingScalePacket = null;
+	private long pehkui_trackingScalePacketTime = Long.MIN_VALUE;
 	private boolean pehkui_shouldIgnoreScaleNbt = false;
+	private boolean pehkui_hasNonDefaultScales = false;
 	
 	@Override
 	public ScaleData pehkui_constructScaleData(ScaleType type)
@@ -53,37 +68,100 @@ public abstract class EntityMixin implements PehkuiEntityExtensions
 	@Override
 	public ScaleData pehkui_getScaleData(ScaleType type)
 	{
-		final Map<ScaleType, ScaleData> scaleTypes = pehkui_getScales();
+		ScaleData scaleData = pehkui_getScaleDataIfPresent(type);
 		
-		synchronized (scaleTypes)
+		if (scaleData != null)
 		{
-			ScaleData scaleData = scaleTypes.get(type);
+			return scaleData;
+		}
+		
+		synchronized (this)
+		{
+			scaleData = pehkui_getScaleDataIfPresent(type);
 			
-			if (scaleData == null && !scaleTypes.containsKey(type))
+			if (scaleData == null)
 			{
-				scaleTypes.put(type, null);
-				scaleTypes.put(type, scaleData = pehkui_constructScaleData(type));
+				if (pehkui_constructingScaleTypes == null)
+				{
+					pehkui_constructingScaleTypes = new ReferenceArraySet<>();
+				}
+				
+				if (!pehkui_constructingScaleTypes.add(type))
+				{
+					return null;
+				}
+				
+				try
+				{
+					scaleData = pehkui_constructScaleData(type);
+				}
+				finally
+				{
+					pehkui_constructingScaleTypes.remove(type);
+				}
+				
+				pehkui_storeScaleData(type, scaleData);
 			}
 			
 			return scaleData;
 		}
 	}
 	
+	private void pehkui_storeScaleData(ScaleType type, ScaleData scaleData)
+	{
+		final int index = type.getIndex();
+		final ScaleData[] scales = pehkui_scaleData;
+		
+		if (scaleData == null && index >= scales.length)
+		{
+			return;
+		}
+		
+		final ScaleData[] newScales = Arrays.copyOf(scales, Math.max(Math.max(scales.length, index + 1), ScaleRegistries.getScaleTypeIndexCount()));
+		newScales[index] = scaleData;
+		pehkui_scaleData = newScales;
+	}
+	
 	@Override
-	public Map<ScaleType, ScaleData> pehkui_getScales()
+	public ScaleData pehkui_getScaleDataIfPresent(ScaleType type)
+	{
+		final int index = type.getIndex();
+		final ScaleData[] scales = pehkui_scaleData;
+		
+		return index < scales.length ? scales[index] : null;
+	}
+	
+	@Override
+	public ScaleData[] pehkui_getScaleDataArray()
+	{
+		return pehkui_scaleData;
+	}
+	
+	@Override
+	public ScaleData pehkui_setScaleData(ScaleType type, ScaleData scaleData)
 	{
-		if (pehkui_scaleTypes == null)
+		synchronized (this)
 		{
-			synchronized (this)
+			final ScaleData previous = pehkui_getScaleDataIfPresent(type);
+			
+			if (scaleData != previous)
 			{
-				if (pehkui_scaleTypes == null)
+				pehkui_storeScaleData(type, scaleData);
+				
+				if (scaleData != null)
 				{
-					pehkui_scaleTypes = new Object2ObjectOpenHashMap<>();
+					pehkui_hasNonDefaultScales = true;
 				}
 			}
+			
+			return previous;
 		}
-		
-		return pehkui_scaleTypes;
+	}
+	
+	@Override
+	public Map<ScaleType, ScaleData> pehkui_getScales()
+	{
+		return new ScaleDataArrayMap(this);
 	}
 	
 	@Override
@@ -98,6 +176,37 @@ public abstract class EntityMixin implements PehkuiEntityExtensions
 		return pehkui_shouldSyncScales;
 	}
 	
+	@Override
+	public Packet<?> pehkui_getTrackingScalePacket()
+	{
+		return pehkui_trackingScalePacket;
+	}
+	
+	@Override
+	public long pehkui_getTrackingScalePacketTime()
+	{
+		return pehkui_trackingScalePacketTime;
+	}
+	
+	@Override
+	public void pehkui_setTrackingScalePacket(Packet<?> packet, long time)
+	{
+		pehkui_trackingScalePacket = packet;
+		pehkui_trackingScalePacketTime = time;
+	}
+	
+	@Override
+	public boolean pehkui_hasNonDefaultScales()
+	{
+		return pehkui_hasNonDefaultScales;
+	}
+	
+	@Override
+	public void pehkui_setHasNonDefaultScales(boolean nonDefault)
+	{
+		pehkui_hasNonDefaultScales = nonDefault;
+	}
+	
 	@Override
 	public boolean pehkui_shouldIgnoreScaleNbt()
 	{
@@ -124,20 +233,29 @@ public abstract class EntityMixin implements PehkuiEntityExtensions
 			return;
 		}
 		
-		if (nbt.contains(Pehkui.MOD_ID + ":scale_data_types", NbtType.COMPOUND) && !DebugCommand.unmarkEntityForScaleReset((Entity) (Object) this, nbt))
+		final boolean packed = PackedScaleNbtUtils.hasPackedScales(nbt);
+		
+		if ((packed || nbt.contains(Pehkui.MOD_ID + ":scale_data_types", NbtType.COMPOUND)) && !DebugCommand.unmarkEntityForScaleReset((Entity) (Object) this, nbt))
 		{
+			if (packed)
+			{
+				PackedScaleNbtUtils.readScales(this, nbt.getByteArray(PackedScaleNbtUtils.KEY));
+				return;
+			}
+			
 			final NbtCompound typeData = nbt.getCompound(Pehkui.MOD_ID + ":scale_data_types");
 			
-			String key;
-			ScaleData scaleData;
-			for (Entry<Identifier, ScaleType> entry : ScaleRegistries.SCALE_TYPES.entrySet())
+			ScaleType type;
+			for (final String key : typeData.getKeys())
 			{
-				key = entry.getKey().toString();
-				
 				if (typeData.contains(key, NbtType.COMPOUND))
 				{
-					scaleData = pehkui_getScaleData(entry.getValue());
-					scaleData.readNbt(typeData.getCompound(key));
+					type = ScaleRegistries.getEntry(ScaleRegistries.SCALE_TYPES, Identifier.tryParse(key));
+					
+					if (type != null)
+					{
+						pehkui_getScaleData(type).readNbt(typeData.getCompound(key));
+					}
 				}
 			}
 		}
@@ -152,28 +270,54 @@ public abstract class EntityMixin implements PehkuiEntityExtensions
 	@Override
 	public NbtCompound pehkui_writeScaleNbt(NbtCompound nbt)
 	{
-		if (pehkui_shouldIgnoreScaleNbt())
+		if (!pehkui_hasNonDefaultScales() || pehkui_shouldIgnoreScaleNbt())
 		{
 			return nbt;
 		}
 		
-		final NbtCompound typeData = new NbtCompound();
+		if (PehkuiConfig.COMMON.packedScaleNbt.get())
+		{
+			PackedScaleNbtUtils.writeScales(pehkui_getScaleDataArray(), nbt);
+			
+			if (!PackedScaleNbtUtils.hasPackedScales(nbt))
+			{
+				pehkui_hasNonDefaultScales = false;
+			}
+			
+			return nbt;
+		}
+		
+		NbtCompound typeData = null;
 		
 		NbtCompound compound;
-		for (final Entry<ScaleType, ScaleData> entry : pehkui_getScales().entrySet())
+		for (final ScaleData scaleData : pehkui_getScaleDataArray())
 		{
-			compound = entry.getValue().writeNbt(new NbtCompound());
+			if (scaleData == null || scaleData.hasDefaultValues())
+			{
+				continue;
+			}
+			
+			compound = scaleData.writeNbt(new NbtCompound());
 			
 			if (compound.getSize() != 0)
 			{
-				typeData.put(ScaleRegistries.getId(ScaleRegistries.SCALE_TYPES, entry.getKey()).toString(), compound);
+				if (typeData == null)
+				{
+					typeData = new NbtCompound();
+				}
+				
+				typeData.put(ScaleRegistries.getId(ScaleRegistries.SCALE_TYPES, scaleData.getScaleType()).toString(), compound);
 			}
 		}
 		
-		if (typeData.getSize() > 0)
+		if (typeData != null)
 		{
 			nbt.put(Pehkui.MOD_ID + ":scale_data_types", typeData);
 		}
+		else
+		{
+			pehkui_hasNonDefaultScales = false;
+		}
 		
 		return nbt;
 	}
@@ -181,10 +325,7 @@ public abstract class EntityMixin implements PehkuiEntityExtensions
 	@Inject(at = @At("HEAD"), method = "tick")
 	private void pehkui$tick(CallbackInfo info)
 	{
-		for (ScaleType type : ScaleRegistries.SCALE_TYPES.values())
-		{
-			ScaleUtils.tickScale(pehkui_getScaleData(type));
-		}
+		ScaleUtils.tickScales((Entity) (Object) this);
 	}
 	
 	@Inject(at = @At("RETURN"), method = "getDimensions", cancellable = true)
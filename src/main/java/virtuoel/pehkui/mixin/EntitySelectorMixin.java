@@ -2,14 +2,23 @@ package virtuoel.pehkui.mixin;
 
 import net.minecraft.command.EntitySelector;
 import net.minecraft.entity.Entity;
+import net.minecraft.predicate.NumberRange;
 import net.minecraft.util.math.Box;
 import org.spongepowered.asm.mixin.Mixin;
+import org.spongepowered.asm.mixin.Unique;
 import org.spongepowered.asm.mixin.injection.At;
 import org.spongepowered.asm.mixin.injection.Redirect;
+import virtuoel.pehkui.api.ScaleType;
+import virtuoel.pehkui.util.PehkuiEntitySelectorExtensions;
 import virtuoel.pehkui.util.ScaleUtils;
 
 @Mixin(EntitySelector.class)
-public class EntitySelectorMixin {
+public class EntitySelectorMixin implements PehkuiEntitySelectorExtensions {
+	@Unique
+	ScaleType pehkui$indexedScaleType = null;
+	@Unique
+	NumberRange.FloatRange pehkui$indexedScaleRange = NumberRange.FloatRange.ANY;
+
 	@Redirect(method = "method_9810", at = @At(value = "INVOKE", target = "Lnet/minecraft/entity/Entity;getBoundingBox()Lnet/minecraft/util/math/Box;"))
 	private static Box pehkui$method_9810$applyInteractionHitbox(Entity obj)
 	{
@@ -29,4 +38,23 @@ public class EntitySelectorMixin {
 
 		return obj.getBoundingBox();
 	}
+
+	@Override
+	public ScaleType pehkui_getIndexedScaleType()
+	{
+		return this.pehkui$indexedScaleType;
+	}
+
+	@Override
+	public NumberRange.FloatRange pehkui_getIndexedScaleRange()
+	{
+		return this.pehkui$indexedScaleRange;
+	}
+
+	@Override
+	public void pehkui_setIndexedScaleRange(final ScaleType scaleType, final NumberRange.FloatRange scaleRange)
+	{
+		this.pehkui$indexedScaleType = scaleType;
+		this.pehkui$indexedScaleRange = scaleRange;
+	}
 }
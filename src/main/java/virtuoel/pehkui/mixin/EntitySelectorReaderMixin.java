@@ -8,13 +8,16 @@ import org.spongepowered.asm.mixin.Unique;
 import org.spongepowered.asm.mixin.injection.At;
 import org.spongepowered.asm.mixin.injection.Inject;
 import org.spongepowered.asm.mixin.injection.callback.CallbackInfo;
+import org.spongepowered.asm.mixin.injection.callback.CallbackInfoReturnable;
 
+import net.minecraft.command.EntitySelector;
 import net.minecraft.command.EntitySelectorReader;
 import net.minecraft.entity.Entity;
 import net.minecraft.predicate.NumberRange;
 import virtuoel.pehkui.api.ScaleType;
 import virtuoel.pehkui.api.ScaleTypes;
 import virtuoel.pehkui.util.CommandUtils;
+import virtuoel.pehkui.util.PehkuiEntitySelectorExtensions;
 import virtuoel.pehkui.util.PehkuiEntitySelectorReaderExtensions;
 
 @Mixin(EntitySelectorReader.class)
@@ -48,6 +51,16 @@ public abstract class EntitySelectorReaderMixin implements PehkuiEntitySelectorR
 		}
 	}
 	
+	@Inject(method = "build", at = @At("RETURN"))
+	private void pehkui$build(CallbackInfoReturnable<EntitySelector> info)
+	{
+		if (!this.pehkui$scaleRange.isDummy())
+		{
+			final ScaleType scaleType = this.pehkui$scaleType == ScaleTypes.INVALID ? ScaleTypes.BASE : this.pehkui$scaleType;
+			((PehkuiEntitySelectorExtensions) info.getReturnValue()).pehkui_setIndexedScaleRange(scaleType, this.pehkui$scaleRange);
+		}
+	}
+	
 	@Override
 	public ScaleType pehkui_getScaleType()
 	{
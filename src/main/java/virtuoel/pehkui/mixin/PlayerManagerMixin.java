@@ -8,18 +8,27 @@ import org.spongepowered.asm.mixin.injection.callback.CallbackInfo;
 import net.minecraft.network.ClientConnection;
 import net.minecraft.server.PlayerManager;
 import net.minecraft.server.network.ServerPlayerEntity;
-import virtuoel.pehkui.api.ScaleRegistries;
-import virtuoel.pehkui.api.ScaleType;
+import virtuoel.pehkui.util.ScalePaletteUtils;
+import virtuoel.pehkui.util.ScaleUtils;
+import virtuoel.pehkui.util.TrackedScaleSyncUtils;
 
 @Mixin(PlayerManager.class)
 public class PlayerManagerMixin
 {
-	@Inject(method = "onPlayerConnect", at = @At(value = "RETURN"))
-	private void pehkui$onPlayerConnect(ClientConnection connection, ServerPlayerEntity player, CallbackInfo info)
+	@Inject(method = "onPlayerConnect", at = @At(value = "INVOKE", target = "Lnet/minecraft/server/world/ServerWorld;onPlayerConnected(Lnet/minecraft/server/network/ServerPlayerEntity;)V"))
+	private void pehkui$onPlayerConnect$onPlayerConnected(ClientConnection connection, ServerPlayerEntity player, CallbackInfo info)
 	{
-		for (ScaleType type : ScaleRegistries.SCALE_TYPES.values())
+		player.networkHandler.sendPacket(ScalePaletteUtils.createPalettePacket());
+		
+		if (TrackedScaleSyncUtils.isEnabled())
 		{
-			type.getScaleData(player).markForSync(true);
+			player.networkHandler.sendPacket(TrackedScaleSyncUtils.createModePacket());
 		}
 	}
+	
+	@Inject(method = "onPlayerConnect", at = @At(value = "RETURN"))
+	private void pehkui$onPlayerConnect(ClientConnection connection, ServerPlayerEntity player, CallbackInfo info)
+	{
+		ScaleUtils.markNonDefaultScalesForSync(player);
+	}
 }
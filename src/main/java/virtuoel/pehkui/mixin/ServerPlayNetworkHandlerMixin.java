@@ -4,14 +4,18 @@ import org.spongepowered.asm.mixin.Mixin;
 import org.spongepowered.asm.mixin.Shadow;
 import org.spongepowered.asm.mixin.injection.At;
 import org.spongepowered.asm.mixin.injection.Constant;
+import org.spongepowered.asm.mixin.injection.Inject;
 import org.spongepowered.asm.mixin.injection.ModifyArg;
 import org.spongepowered.asm.mixin.injection.ModifyConstant;
+import org.spongepowered.asm.mixin.injection.callback.CallbackInfo;
 
 import net.minecraft.entity.MovementType;
+import net.minecraft.network.Packet;
 import net.minecraft.network.packet.c2s.play.PlayerInteractBlockC2SPacket;
 import net.minecraft.server.network.ServerPlayNetworkHandler;
 import net.minecraft.server.network.ServerPlayerEntity;
 import net.minecraft.util.math.Vec3d;
+import virtuoel.pehkui.util.ScaleSyncBatchUtils;
 import virtuoel.pehkui.util.ScaleUtils;
 
 @Mixin(ServerPlayNetworkHandler.class)
@@ -19,6 +23,15 @@ public class ServerPlayNetworkHandlerMixin
 {
 	@Shadow ServerPlayerEntity player;
 	
+	@Inject(method = "sendPacket(Lnet/minecraft/network/Packet;)V", at = @At("HEAD"), cancellable = true)
+	private void pehkui$sendPacket(Packet<?> packet, CallbackInfo info)
+	{
+		if (ScaleSyncBatchUtils.batch((ServerPlayNetworkHandler) (Object) this, packet))
+		{
+			info.cancel();
+		}
+	}
+	
 	@ModifyArg(method = "onVehicleMove", at = @At(value = "INVOKE", target = "Lnet/minecraft/util/math/Box;contract(D)Lnet/minecraft/util/math/Box;"))
 	private double pehkui$onVehicleMove$contract(double value)
 	{
@@ -0,0 +1,32 @@
+package virtuoel.pehkui.mixin.client;
+
+import java.util.List;
+
+import org.spongepowered.asm.mixin.Final;
+import org.spongepowered.asm.mixin.Mixin;
+import org.spongepowered.asm.mixin.Shadow;
+import org.spongepowered.asm.mixin.Unique;
+import org.spongepowered.asm.mixin.injection.At;
+import org.spongepowered.asm.mixin.injection.Inject;
+import org.spongepowered.asm.mixin.injection.callback.CallbackInfo;
+
+import net.minecraft.entity.Entity;
+import net.minecraft.entity.data.DataTracker;
+import virtuoel.pehkui.util.TrackedScaleSyncUtils;
+
+@Mixin(DataTracker.class)
+public class DataTrackerMixin
+{
+	@Shadow @Final Entity trackedEntity;
+	
+	@Unique int pehkui$trackedScaleTickDelay = TrackedScaleSyncUtils.getDefaultTrackedScaleTickDelay();
+	
+	@Inject(method = "writeUpdatedEntries", at = @At("HEAD"))
+	private void pehkui$writeUpdatedEntries(List<DataTracker.Entry<?>> entries, CallbackInfo info)
+	{
+		if (TrackedScaleSyncUtils.isReceiving())
+		{
+			pehkui$trackedScaleTickDelay = TrackedScaleSyncUtils.applyTrackedEntries(trackedEntity, entries, pehkui$trackedScaleTickDelay);
+		}
+	}
+}
@@ -0,0 +1,19 @@
+package virtuoel.pehkui.mixin.client;
+
+import org.spongepowered.asm.mixin.Mixin;
+import org.spongepowered.asm.mixin.injection.At;
+import org.spongepowered.asm.mixin.injection.Inject;
+import org.spongepowered.asm.mixin.injection.callback.CallbackInfo;
+
+import net.minecraft.client.render.GameRenderer;
+import virtuoel.pehkui.util.ScaleRenderUtils;
+
+@Mixin(GameRenderer.class)
+public class GameRendererMixin
+{
+	@Inject(method = "render", at = @At("HEAD"))
+	private void pehkui$render(CallbackInfo info)
+	{
+		ScaleRenderUtils.onRenderFrame();
+	}
+}
@@ -7,8 +7,7 @@ import org.spongepowered.asm.mixin.injection.callback.CallbackInfo;
 
 import net.minecraft.server.PlayerManager;
 import net.minecraft.server.network.ServerPlayerEntity;
-import virtuoel.pehkui.api.ScaleRegistries;
-import virtuoel.pehkui.api.ScaleType;
+import virtuoel.pehkui.util.ScaleUtils;
 
 @Mixin(PlayerManager.class)
 public class PlayerManagerMixin
@@ -16,9 +15,6 @@ public class PlayerManagerMixin
 	@Inject(method = "sendPlayerStatus", at = @At(value = "RETURN"))
 	private void pehkui$sendPlayerStatus(ServerPlayerEntity player, CallbackInfo info)
 	{
-		for (ScaleType type : ScaleRegistries.SCALE_TYPES.values())
-		{
-			type.getScaleData(player).markForSync(true);
-		}
+		ScaleUtils.markNonDefaultScalesForSync(player);
 	}
 }
@@ -0,0 +1,56 @@
+package virtuoel.pehkui.mixin.compat117plus;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.function.Predicate;
+
+import org.spongepowered.asm.mixin.Mixin;
+import org.spongepowered.asm.mixin.injection.At;
+import org.spongepowered.asm.mixin.injection.Redirect;
+
+import net.minecraft.command.EntitySelector;
+import net.minecraft.entity.Entity;
+import net.minecraft.server.world.ServerWorld;
+import net.minecraft.util.TypeFilter;
+import virtuoel.pehkui.api.ScaleType;
+import virtuoel.pehkui.util.PehkuiEntitySelectorExtensions;
+import virtuoel.pehkui.util.ScaleIndexUtils;
+
+@Mixin(EntitySelector.class)
+public class EntitySelectorMixin
+{
+	@Redirect(method = "appendEntitiesFromWorld", at = @At(value = "INVOKE", target = "Lnet/minecraft/server/world/ServerWorld;getEntitiesByType(Lnet/minecraft/util/TypeFilter;Ljava/util/function/Predicate;)Ljava/util/List;"))
+	private List<? extends Entity> pehkui$appendEntitiesFromWorld$getEntitiesByType(ServerWorld world, TypeFilter<Entity, Entity> filter, Predicate<? super Entity> predicate)
+	{
+		final PehkuiEntitySelectorExtensions selector = (PehkuiEntitySelectorExtensions) this;
+		final ScaleType type = selector.pehkui_getIndexedScaleType();
+		
+		final Collection<Entity> candidates = type == null ? null : ScaleIndexUtils.getCandidates(world, type, selector.pehkui_getIndexedScaleRange());
+		
+		if (candidates == null)
+		{
+			return world.getEntitiesByType(filter, predicate);
+		}
+		
+		final List<Entity> entities = new ArrayList<>();
+		
+		Entity entity;
+		for (final Entity candidate : candidates)
+		{
+			if (candidate.isRemoved() || candidate.world != world)
+			{
+				continue;
+			}
+			
+			entity = filter.downcast(candidate);
+			
+			if (entity != null && predicate.test(entity))
+			{
+				entities.add(entity);
+			}
+		}
+		
+		return entities;
+	}
+}
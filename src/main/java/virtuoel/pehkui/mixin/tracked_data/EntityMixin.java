@@ -0,0 +1,52 @@
+package virtuoel.pehkui.mixin.tracked_data;
+
+import org.spongepowered.asm.mixin.Final;
+import org.spongepowered.asm.mixin.Mixin;
+import org.spongepowered.asm.mixin.Shadow;
+import org.spongepowered.asm.mixin.injection.At;
+import org.spongepowered.asm.mixin.injection.Inject;
+import org.spongepowered.asm.mixin.injection.callback.CallbackInfo;
+
+import net.minecraft.entity.Entity;
+import net.minecraft.entity.data.DataTracker;
+import net.minecraft.world.World;
+import virtuoel.pehkui.api.ScaleTypes;
+import virtuoel.pehkui.util.PehkuiTrackedScaleExtensions;
+import virtuoel.pehkui.util.TrackedScaleSyncUtils;
+
+@Mixin(Entity.class)
+public abstract class EntityMixin implements PehkuiTrackedScaleExtensions
+{
+	@Shadow @Final protected DataTracker dataTracker;
+	
+	private boolean pehkui_trackedScale = false;
+	
+	@Inject(method = "<init>", at = @At(value = "INVOKE", target = "Lnet/minecraft/entity/Entity;initDataTracker()V"))
+	private void pehkui$construct(CallbackInfo info)
+	{
+		final World world = ((Entity) (Object) this).world;
+		
+		if (TrackedScaleSyncUtils.isEnabled() && world != null && !world.isClient)
+		{
+			dataTracker.startTracking(TrackedScaleSyncUtils.SCALE_TICK_DELAY, TrackedScaleSyncUtils.getDefaultTrackedScaleTickDelay());
+			dataTracker.startTracking(TrackedScaleSyncUtils.TARGET_SCALE, ScaleTypes.BASE.getDefaultBaseScale());
+			pehkui_trackedScale = true;
+		}
+	}
+	
+	@Override
+	public boolean pehkui_hasTrackedScale()
+	{
+		return pehkui_trackedScale;
+	}
+	
+	@Override
+	public void pehkui_setTrackedScale(float targetScale, int trackedScaleTickDelay)
+	{
+		if (pehkui_trackedScale)
+		{
+			dataTracker.set(TrackedScaleSyncUtils.SCALE_TICK_DELAY, trackedScaleTickDelay);
+			dataTracker.set(TrackedScaleSyncUtils.TARGET_SCALE, targetScale);
+		}
+	}
+}
@@ -0,0 +1,302 @@
+package virtuoel.pehkui.tool;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Minimal NBT codec that doesn't depend on Minecraft classes, so that {@link ScaleDataTool} can run from the mod jar alone.
+ * <p>Compounds are read as {@link LinkedHashMap}s, lists as {@link TagList}s, arrays as primitive arrays,
+ * and all other tags as their boxed values. Writing maps each of those back to the tag type it was read from.
+ */
+final class OfflineNbt
+{
+	static final byte END = 0;
+	static final byte BYTE = 1;
+	static final byte SHORT = 2;
+	static final byte INT = 3;
+	static final byte LONG = 4;
+	static final byte FLOAT = 5;
+	static final byte DOUBLE = 6;
+	static final byte BYTE_ARRAY = 7;
+	static final byte STRING = 8;
+	static final byte LIST = 9;
+	static final byte COMPOUND = 10;
+	static final byte INT_ARRAY = 11;
+	static final byte LONG_ARRAY = 12;
+	
+	private static final int MAX_DEPTH = 512;
+	
+	private OfflineNbt()
+	{
+		
+	}
+	
+	/**
+	 * Reads a named root compound, discarding its name.
+	 */
+	static Map<String, Object> readRoot(DataInput input) throws IOException
+	{
+		final byte type = input.readByte();
+		
+		if (type != COMPOUND)
+		{
+			throw new IOException("Root tag must be a compound, but found type " + type);
+		}
+		
+		input.readUTF();
+		
+		return readCompound(input, 0);
+	}
+	
+	/**
+	 * Writes a root compound with an empty name, same as the game does for chunks and player data.
+	 */
+	static void writeRoot(DataOutput output, Map<String, Object> root) throws IOException
+	{
+		output.writeByte(COMPOUND);
+		output.writeUTF("");
+		writeCompound(output, root);
+	}
+	
+	private static Map<String, Object> readCompound(DataInput input, int depth) throws IOException
+	{
+		final Map<String, Object> compound = new LinkedHashMap<>();
+		
+		byte type;
+		while ((type = input.readByte()) != END)
+		{
+			final String key = input.readUTF();
+			compound.put(key, readPayload(input, type, depth + 1));
+		}
+		
+		return compound;
+	}
+	
+	private static Object readPayload(DataInput input, byte type, int depth) throws IOException
+	{
+		if (depth > MAX_DEPTH)
+		{
+			throw new IOException("NBT nested deeper than " + MAX_DEPTH);
+		}
+		
+		switch (type)
+		{
+			case BYTE:
+				return input.readByte();
+			case SHORT:
+				return input.readShort();
+			case INT:
+				return input.readInt();
+			case LONG:
+				return input.readLong();
+			case FLOAT:
+				return input.readFloat();
+			case DOUBLE:
+				return input.readDouble();
+			case BYTE_ARRAY:
+			{
+				final byte[] array = new byte[readLength(input)];
+				input.readFully(array);
+				return array;
+			}
+			case STRING:
+				return input.readUTF();
+			case LIST:
+			{
+				final byte elementType = input.readByte();
+				final int length = readLength(input);
+				final TagList list = new TagList(elementType, Math.min(length, 1024));
+				
+				for (int i = 0; i < length; i++)
+				{
+					list.elements.add(readPayload(input, elementType, depth + 1));
+				}
+				
+				return list;
+			}
+			case COMPOUND:
+				return readCompound(input, depth);
+			case INT_ARRAY:
+			{
+				final int[] array = new int[readLength(input)];
+				for (int i = 0; i < array.length; i++)
+				{
+					array[i] = input.readInt();
+				}
+				return array;
+			}
+			case LONG_ARRAY:
+			{
+				final long[] array = new long[readLength(input)];
+				for (int i = 0; i < array.length; i++)
+				{
+					array[i] = input.readLong();
+				}
+				return array;
+			}
+			default:
+				throw new IOException("Unknown NBT tag type " + type);
+		}
+	}
+	
+	private static int readLength(DataInput input) throws IOException
+	{
+		final int length = input.readInt();
+		
+		if (length < 0)
+		{
+			throw new IOException("Negative NBT length " + length);
+		}
+		
+		return length;
+	}
+	
+	private static void writeCompound(DataOutput output, Map<String, Object> compound) throws IOException
+	{
+		for (final Map.Entry<String, Object> entry : compound.entrySet())
+		{
+			final Object value = entry.getValue();
+			
+			output.writeByte(getType(value));
+			output.writeUTF(entry.getKey());
+			writePayload(output, value);
+		}
+		
+		output.writeByte(END);
+	}
+	
+	@SuppressWarnings("unchecked")
+	private static void writePayload(DataOutput output, Object value) throws IOException
+	{
+		switch (getType(value))
+		{
+			case BYTE:
+				output.writeByte((Byte) value);
+				break;
+			case SHORT:
+				output.writeShort((Short) value);
+				break;
+			case INT:
+				output.writeInt((Integer) value);
+				break;
+			case LONG:
+				output.writeLong((Long) value);
+				break;
+			case FLOAT:
+				output.writeFloat((Float) value);
+				break;
+			case DOUBLE:
+				output.writeDouble((Double) value);
+				break;
+			case BYTE_ARRAY:
+				output.writeInt(((byte[]) value).length);
+				output.write((byte[]) value);
+				break;
+			case STRING:
+				output.writeUTF((String) value);
+				break;
+			case LIST:
+			{
+				final TagList list = (TagList) value;
+				output.writeByte(list.elements.isEmpty() ? list.elementType : getType(list.elements.get(0)));
+				output.writeInt(list.elements.size());
+				for (final Object element : list.elements)
+				{
+					writePayload(output, element);
+				}
+				break;
+			}
+			case COMPOUND:
+				writeCompound(output, (Map<String, Object>) value);
+				break;
+			case INT_ARRAY:
+				output.writeInt(((int[]) value).length);
+				for (final int i : (int[]) value)
+				{
+					output.writeInt(i);
+				}
+				break;
+			default:
+				output.writeInt(((long[]) value).length);
+				for (final long l : (long[]) value)
+				{
+					output.writeLong(l);
+				}
+				break;
+		}
+	}
+	
+	private static byte getType(Object value)
+	{
+		if (value instanceof Byte)
+		{
+			return BYTE;
+		}
+		else if (value instanceof Short)
+		{
+			return SHORT;
+		}
+		else if (value instanceof Integer)
+		{
+			return INT;
+		}
+		else if (value instanceof Long)
+		{
+			return LONG;
+		}
+		else if (value instanceof Float)
+		{
+			return FLOAT;
+		}
+		else if (value instanceof Double)
+		{
+			return DOUBLE;
+		}
+		else if (value instanceof byte[])
+		{
+			return BYTE_ARRAY;
+		}
+		else if (value instanceof String)
+		{
+			return STRING;
+		}
+		else if (value instanceof TagList)
+		{
+			return LIST;
+		}
+		else if (value instanceof Map)
+		{
+			return COMPOUND;
+		}
+		else if (value instanceof int[])
+		{
+			return INT_ARRAY;
+		}
+		else if (value instanceof long[])
+		{
+			return LONG_ARRAY;
+		}
+		
+		throw new IllegalArgumentException("Not an NBT value: " + value);
+	}
+	
+	/**
+	 * List tag that remembers its element type, so that empty lists are written back unchanged.
+	 */
+	static final class TagList
+	{
+		final byte elementType;
+		final List<Object> elements;
+		
+		TagList(byte elementType, int capacity)
+		{
+			this.elementType = elementType;
+			this.elements = new ArrayList<>(capacity);
+		}
+	}
+}
@@ -0,0 +1,481 @@
+package virtuoel.pehkui.tool;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Finds Pehkui scale data in NBT read by {@link OfflineNbt}, collects statistics about it, and optionally edits it.
+ * <p>Scale data is looked for in every compound, so entities are found no matter how a chunk or player file nests them,
+ * including passengers and entities stored in items.
+ */
+final class ScaleDataEditor
+{
+	static final String SCALE_DATA_KEY = "pehkui:scale_data_types";
+	static final String PACKED_SCALE_DATA_KEY = "pehkui:scale_data_packed";
+	
+	private static final String[] SCALE_KEYS = { "scale", "previous", "initial", "target" };
+	
+	/**
+	 * Version and field bits of the packed format written by {@code PackedScaleNbtUtils}.
+	 */
+	static final byte PACKED_VERSION = 1;
+	static final int PACKED_BASE_SCALE = 1 << 0;
+	static final int PACKED_INITIAL_SCALE = 1 << 1;
+	static final int PACKED_TARGET_SCALE = 1 << 2;
+	static final int PACKED_SCALE_TICKS = 1 << 3;
+	static final int PACKED_TOTAL_SCALE_TICKS = 1 << 4;
+	static final int PACKED_PERSISTENCE = 1 << 5;
+	static final int PACKED_EASING = 1 << 6;
+	static final int PACKED_MODIFIERS = 1 << 7;
+	
+	enum Operation
+	{
+		/**
+		 * Only collects statistics.
+		 */
+		STATS,
+		/**
+		 * Removes all scale data.
+		 */
+		RESET,
+		/**
+		 * Clamps stored scales into a range.
+		 */
+		CLAMP,
+		/**
+		 * Converts scale data from the compound format to the packed format.
+		 */
+		MIGRATE;
+	}
+	
+	private final Operation operation;
+	private final float min;
+	private final float max;
+	
+	ScaleDataEditor(Operation operation, float min, float max)
+	{
+		this.operation = operation;
+		this.min = min;
+		this.max = max;
+	}
+	
+	/**
+	 * Looks for scale data in the given compound and all compounds nested in it.
+	 *
+	 * @return true if anything was changed
+	 */
+	@SuppressWarnings("unchecked")
+	boolean process(Map<String, Object> compound, Stats stats)
+	{
+		boolean changed = false;
+		
+		if (compound.get(PACKED_SCALE_DATA_KEY) instanceof byte[])
+		{
+			stats.packedEntities++;
+			
+			if (this.operation == Operation.RESET)
+			{
+				compound.remove(PACKED_SCALE_DATA_KEY);
+				changed = true;
+			}
+		}
+		
+		final Object scaleData = compound.get(SCALE_DATA_KEY);
+		
+		if (scaleData instanceof Map)
+		{
+			stats.entities++;
+			changed |= processScaleData(compound, (Map<String, Object>) scaleData, stats);
+		}
+		
+		if (changed)
+		{
+			stats.modifiedEntities++;
+		}
+		
+		for (final Map.Entry<String, Object> entry : compound.entrySet())
+		{
+			if (!entry.getKey().equals(SCALE_DATA_KEY))
+			{
+				changed |= processValue(entry.getValue(), stats);
+			}
+		}
+		
+		return changed;
+	}
+	
+	@SuppressWarnings("unchecked")
+	private boolean processValue(Object value, Stats stats)
+	{
+		if (value instanceof Map)
+		{
+			return process((Map<String, Object>) value, stats);
+		}
+		
+		boolean changed = false;
+		
+		if (value instanceof OfflineNbt.TagList)
+		{
+			final OfflineNbt.TagList list = (OfflineNbt.TagList) value;
+			
+			if (list.elementType == OfflineNbt.COMPOUND || list.elementType == OfflineNbt.LIST)
+			{
+				for (final Object element : list.elements)
+				{
+					changed |= processValue(element, stats);
+				}
+			}
+		}
+		
+		return changed;
+	}
+	
+	@SuppressWarnings("unchecked")
+	private boolean processScaleData(Map<String, Object> entity, Map<String, Object> scaleData, Stats stats)
+	{
+		for (final Map.Entry<String, Object> entry : scaleData.entrySet())
+		{
+			if (entry.getValue() instanceof Map)
+			{
+				stats.record(entry.getKey(), (Map<String, Object>) entry.getValue());
+			}
+		}
+		
+		switch (this.operation)
+		{
+			case RESET:
+				entity.remove(SCALE_DATA_KEY);
+				return true;
+			case CLAMP:
+				return clamp(scaleData);
+			case MIGRATE:
+				entity.remove(SCALE_DATA_KEY);
+				final byte[] packed = pack(scaleData);
+				if (packed != null)
+				{
+					entity.put(PACKED_SCALE_DATA_KEY, packed);
+				}
+				return true;
+			default:
+				return false;
+		}
+	}
+	
+	@SuppressWarnings("unchecked")
+	private boolean clamp(Map<String, Object> scaleData)
+	{
+		boolean changed = false;
+		
+		for (final Object typeData : scaleData.values())
+		{
+			if (!(typeData instanceof Map))
+			{
+				continue;
+			}
+			
+			final Map<String, Object> values = (Map<String, Object>) typeData;
+			
+			for (final String key : SCALE_KEYS)
+			{
+				final Object value = values.get(key);
+				
+				if (value instanceof Float)
+				{
+					final float scale = (Float) value;
+					final float clamped = Math.max(this.min, Math.min(scale, this.max));
+					
+					if (clamped != scale)
+					{
+						values.put(key, clamped);
+						changed = true;
+					}
+				}
+			}
+		}
+		
+		return changed;
+	}
+	
+	/**
+	 * Converts scale data to the packed format. Values that the compound format reads as the base scale when missing are written explicitly,
+	 * since the packed format reads them as the default scale instead.
+	 *
+	 * @return Packed scale data, or null if no type had any values
+	 */
+	@SuppressWarnings("unchecked")
+	static byte[] pack(Map<String, Object> scaleData)
+	{
+		final List<String> ids = new ArrayList<>();
+		final Map<String, Integer> palette = new HashMap<>();
+		
+		final ByteArrayOutputStream bodyBytes = new ByteArrayOutputStream();
+		final ByteArrayOutputStream valueBytes = new ByteArrayOutputStream();
+		
+		try
+		{
+			final DataOutputStream body = new DataOutputStream(bodyBytes);
+			final DataOutputStream values = new DataOutputStream(valueBytes);
+			
+			int count = 0;
+			for (final Map.Entry<String, Object> entry : scaleData.entrySet())
+			{
+				if (!(entry.getValue() instanceof Map))
+				{
+					continue;
+				}
+				
+				final Map<String, Object> typeData = (Map<String, Object>) entry.getValue();
+				final Float scale = getFloat(typeData, "scale");
+				final Float initial = getFloat(typeData, "initial");
+				final Float target = getFloat(typeData, "target");
+				final Object ticks = typeData.get("ticks");
+				final Object totalTicks = typeData.get("total_ticks");
+				final Object persistent = typeData.get("persistent");
+				final Object easing = typeData.get("easing");
+				final List<String> modifiers = getModifierIds(typeData.get("baseValueModifiers"));
+				
+				int fields = 0;
+				fields |= scale != null ? PACKED_BASE_SCALE : 0;
+				fields |= initial != null || scale != null ? PACKED_INITIAL_SCALE : 0;
+				fields |= target != null || scale != null ? PACKED_TARGET_SCALE : 0;
+				fields |= ticks instanceof Number ? PACKED_SCALE_TICKS : 0;
+				fields |= totalTicks instanceof Number ? PACKED_TOTAL_SCALE_TICKS : 0;
+				fields |= persistent instanceof Number ? PACKED_PERSISTENCE : 0;
+				fields |= easing instanceof String ? PACKED_EASING : 0;
+				fields |= !modifiers.isEmpty() ? PACKED_MODIFIERS : 0;
+				
+				if (fields == 0)
+				{
+					continue;
+				}
+				
+				valueBytes.reset();
+				values.writeByte(fields);
+				
+				if (scale != null)
+				{
+					values.writeFloat(scale);
+				}
+				
+				if ((fields & PACKED_INITIAL_SCALE) != 0)
+				{
+					values.writeFloat(initial != null ? initial : scale);
+				}
+				
+				if ((fields & PACKED_TARGET_SCALE) != 0)
+				{
+					values.writeFloat(target != null ? target : scale);
+				}
+				
+				if ((fields & PACKED_SCALE_TICKS) != 0)
+				{
+					writeVarInt(values, ((Number) ticks).intValue());
+				}
+				
+				if ((fields & PACKED_TOTAL_SCALE_TICKS) != 0)
+				{
+					writeVarInt(values, ((Number) totalTicks).intValue());
+				}
+				
+				if ((fields & PACKED_PERSISTENCE) != 0)
+				{
+					values.writeBoolean(((Number) persistent).byteValue() != 0);
+				}
+				
+				if ((fields & PACKED_EASING) != 0)
+				{
+					writeVarInt(values, getIndex(ids, palette, (String) easing));
+				}
+				
+				if ((fields & PACKED_MODIFIERS) != 0)
+				{
+					writeVarInt(values, modifiers.size());
+					
+					for (final String modifier : modifiers)
+					{
+						writeVarInt(values, getIndex(ids, palette, modifier));
+					}
+				}
+				
+				writeVarInt(body, getIndex(ids, palette, entry.getKey()));
+				writeVarInt(body, valueBytes.size());
+				valueBytes.writeTo(body);
+				count++;
+			}
+			
+			if (count == 0)
+			{
+				return null;
+			}
+			
+			final ByteArrayOutputStream packedBytes = new ByteArrayOutputStream(bodyBytes.size() + ids.size() * 16 + 8);
+			final DataOutputStream packed = new DataOutputStream(packedBytes);
+			
+			packed.writeByte(PACKED_VERSION);
+			writeVarInt(packed, ids.size());
+			
+			for (final String id : ids)
+			{
+				final byte[] bytes = id.getBytes(StandardCharsets.UTF_8);
+				writeVarInt(packed, bytes.length);
+				packed.write(bytes);
+			}
+			
+			writeVarInt(packed, count);
+			bodyBytes.writeTo(packed);
+			
+			return packedBytes.toByteArray();
+		}
+		catch (IOException e)
+		{
+			throw new IllegalStateException(e);
+		}
+	}
+	
+	private static Float getFloat(Map<String, Object> typeData, String key)
+	{
+		final Object value = typeData.get(key);
+		
+		return value instanceof Number ? ((Number) value).floatValue() : null;
+	}
+	
+	@SuppressWarnings("unchecked")
+	static List<String> getModifierIds(Object modifiers)
+	{
+		final List<String> ids = new ArrayList<>();
+		
+		if (modifiers instanceof OfflineNbt.TagList)
+		{
+			for (final Object element : ((OfflineNbt.TagList) modifiers).elements)
+			{
+				if (element instanceof String)
+				{
+					ids.add((String) element);
+				}
+				else if (element instanceof Map && ((Map<String, Object>) element).get("id") instanceof String)
+				{
+					ids.add((String) ((Map<String, Object>) element).get("id"));
+				}
+			}
+		}
+		
+		return ids;
+	}
+	
+	private static int getIndex(List<String> ids, Map<String, Integer> palette, String id)
+	{
+		Integer index = palette.get(id);
+		
+		if (index == null)
+		{
+			index = ids.size();
+			ids.add(id);
+			palette.put(id, index);
+		}
+		
+		return index;
+	}
+	
+	private static void writeVarInt(DataOutputStream output, int value) throws IOException
+	{
+		while ((value & -128) != 0)
+		{
+			output.writeByte(value & 127 | 128);
+			value >>>= 7;
+		}
+		
+		output.writeByte(value);
+	}
+	
+	/**
+	 * Statistics of the scale data found in one or more files. Each file gets its own instance, which are merged afterwards.
+	 */
+	static final class Stats
+	{
+		long files;
+		long failedFiles;
+		long modifiedFiles;
+		long skippedChunks;
+		long entities;
+		long packedEntities;
+		long modifiedEntities;
+		final Map<String, TypeStats> types = new TreeMap<>();
+		
+		private void record(String type, Map<String, Object> values)
+		{
+			TypeStats stats = this.types.get(type);
+			
+			if (stats == null)
+			{
+				stats = new TypeStats();
+				this.types.put(type, stats);
+			}
+			
+			stats.entries++;
+			
+			final Float scale = getFloat(values, "scale");
+			
+			if (scale != null)
+			{
+				stats.scaled++;
+				stats.min = Math.min(stats.min, scale);
+				stats.max = Math.max(stats.max, scale);
+			}
+			
+			if (values.containsKey("ticks"))
+			{
+				stats.transitioning++;
+			}
+		}
+		
+		void merge(Stats other)
+		{
+			this.files += other.files;
+			this.failedFiles += other.failedFiles;
+			this.modifiedFiles += other.modifiedFiles;
+			this.skippedChunks += other.skippedChunks;
+			this.entities += other.entities;
+			this.packedEntities += other.packedEntities;
+			this.modifiedEntities += other.modifiedEntities;
+			
+			for (final Map.Entry<String, TypeStats> entry : other.types.entrySet())
+			{
+				final TypeStats existing = this.types.get(entry.getKey());
+				
+				if (existing == null)
+				{
+					this.types.put(entry.getKey(), entry.getValue());
+				}
+				else
+				{
+					existing.merge(entry.getValue());
+				}
+			}
+		}
+	}
+	
+	static final class TypeStats
+	{
+		long entries;
+		long scaled;
+		long transitioning;
+		float min = Float.POSITIVE_INFINITY;
+		float max = Float.NEGATIVE_INFINITY;
+		
+		private void merge(TypeStats other)
+		{
+			this.entries += other.entries;
+			this.scaled += other.scaled;
+			this.transitioning += other.transitioning;
+			this.min = Math.min(this.min, other.min);
+			this.max = Math.max(this.max, other.max);
+		}
+	}
+}
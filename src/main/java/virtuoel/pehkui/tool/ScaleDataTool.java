@@ -0,0 +1,503 @@
+package virtuoel.pehkui.tool;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+import java.util.zip.InflaterInputStream;
+
+/**
+ * Offline tool for scanning and rewriting Pehkui scale data in a world folder while no server is running.
+ * <p>Region files of every dimension, player data files and {@code level.dat} are read through memory maps and processed in parallel, one file per task.
+ * Modified chunks are written back into their region file in place, and other files are replaced atomically.
+ * <p>Runs from the mod jar alone, so it must not load any Minecraft or Pehkui classes outside of this package:
+ * <pre>java -jar pehkui.jar &lt;world&gt; [stats | reset | clamp &lt;min&gt; &lt;max&gt; | migrate] [--dry-run] [--threads &lt;count&gt;]</pre>
+ * <p>{@code java -jar pehkui.jar --verify} checks the tool against a generated sample world, see {@link ScaleDataToolCheck}.
+ */
+public class ScaleDataTool
+{
+	static final int SECTOR_SIZE = 4096;
+	private static final int CHUNKS_PER_REGION = 1024;
+	
+	static final byte GZIP = 1;
+	static final byte ZLIB = 2;
+	private static final byte UNCOMPRESSED = 3;
+	private static final int EXTERNAL_FLAG = 0x80;
+	
+	private final ScaleDataEditor editor;
+	private final boolean dryRun;
+	
+	ScaleDataTool(ScaleDataEditor editor, boolean dryRun)
+	{
+		this.editor = editor;
+		this.dryRun = dryRun;
+	}
+	
+	public static void main(String[] args)
+	{
+		if (args.length == 0)
+		{
+			printUsage();
+			return;
+		}
+		
+		if (args.length == 1 && args[0].equals("--verify"))
+		{
+			System.exit(ScaleDataToolCheck.run() ? 0 : 1);
+			return;
+		}
+		
+		final Path world = Paths.get(args[0]);
+		ScaleDataEditor.Operation operation = ScaleDataEditor.Operation.STATS;
+		float min = 0.0F;
+		float max = Float.MAX_VALUE;
+		boolean dryRun = false;
+		int threads = Runtime.getRuntime().availableProcessors();
+		
+		try
+		{
+			for (int i = 1; i < args.length; i++)
+			{
+				switch (args[i].toLowerCase(Locale.ROOT))
+				{
+					case "stats":
+						operation = ScaleDataEditor.Operation.STATS;
+						break;
+					case "reset":
+						operation = ScaleDataEditor.Operation.RESET;
+						break;
+					case "clamp":
+						operation = ScaleDataEditor.Operation.CLAMP;
+						min = Float.parseFloat(args[++i]);
+						max = Float.parseFloat(args[++i]);
+						break;
+					case "migrate":
+						operation = ScaleDataEditor.Operation.MIGRATE;
+						break;
+					case "--dry-run":
+						dryRun = true;
+						break;
+					case "--threads":
+						threads = Math.max(1, Integer.parseInt(args[++i]));
+						break;
+					default:
+						throw new IllegalArgumentException(args[i]);
+				}
+			}
+		}
+		catch (IndexOutOfBoundsException | IllegalArgumentException e)
+		{
+			printUsage();
+			return;
+		}
+		
+		if (!Files.isDirectory(world))
+		{
+			System.err.println("Not a directory: " + world);
+			return;
+		}
+		
+		if (operation != ScaleDataEditor.Operation.STATS && !dryRun)
+		{
+			System.out.println("Rewriting scale data in " + world + ". Make sure no server is running on this world, and that it is backed up.");
+		}
+		
+		final ScaleDataTool tool = new ScaleDataTool(new ScaleDataEditor(operation, min, max), dryRun);
+		final ScaleDataEditor.Stats stats = tool.run(world, threads);
+		
+		printStats(stats, operation != ScaleDataEditor.Operation.STATS, dryRun);
+	}
+	
+	private static void printUsage()
+	{
+		System.out.println("Usage: java -jar pehkui.jar <world> [stats | reset | clamp <min> <max> | migrate] [--dry-run] [--threads <count>]");
+		System.out.println("       java -jar pehkui.jar --verify");
+		System.out.println("  stats    Report scale data statistics (default)");
+		System.out.println("  reset    Remove all scale data");
+		System.out.println("  clamp    Clamp stored scales into the range [min, max]");
+		System.out.println("  migrate  Convert scale data to the packed format used when packedScaleNbt is enabled");
+		System.out.println("  --verify Run every operation on a generated sample world and check the results");
+	}
+	
+	private static void printStats(ScaleDataEditor.Stats stats, boolean modifying, boolean dryRun)
+	{
+		System.out.println(String.format(Locale.ROOT, "Scanned %d files (%d failed, %d chunks skipped).", stats.files, stats.failedFiles, stats.skippedChunks));
+		System.out.println(String.format(Locale.ROOT, "Found %d entities with scale data and %d with packed scale data.", stats.entities, stats.packedEntities));
+		
+		for (final Map.Entry<String, ScaleDataEditor.TypeStats> entry : stats.types.entrySet())
+		{
+			final ScaleDataEditor.TypeStats type = entry.getValue();
+			
+			if (type.scaled > 0)
+			{
+				System.out.println(String.format(Locale.ROOT, "  %s: %d entries, %d scaled (%s to %s), %d transitioning", entry.getKey(), type.entries, type.scaled, type.min, type.max, type.transitioning));
+			}
+			else
+			{
+				System.out.println(String.format(Locale.ROOT, "  %s: %d entries, %d transitioning", entry.getKey(), type.entries, type.transitioning));
+			}
+		}
+		
+		if (modifying)
+		{
+			System.out.println(String.format(Locale.ROOT, dryRun ? "Would modify %d entities in %d files." : "Modified %d entities in %d files.", stats.modifiedEntities, stats.modifiedFiles));
+		}
+	}
+	
+	ScaleDataEditor.Stats run(Path world, int threads)
+	{
+		final List<Path> files;
+		
+		try (final Stream<Path> paths = Files.walk(world))
+		{
+			files = paths.filter(ScaleDataTool::isWorldDataFile).collect(Collectors.toList());
+		}
+		catch (IOException e)
+		{
+			System.err.println("Failed to list files of " + world + ": " + e);
+			return new ScaleDataEditor.Stats();
+		}
+		
+		final ExecutorService executor = Executors.newFixedThreadPool(threads);
+		final List<Future<ScaleDataEditor.Stats>> results = new ArrayList<>(files.size());
+		
+		for (final Path file : files)
+		{
+			results.add(executor.submit(() -> processFile(file)));
+		}
+		
+		executor.shutdown();
+		
+		final ScaleDataEditor.Stats stats = new ScaleDataEditor.Stats();
+		
+		for (int i = 0; i < results.size(); i++)
+		{
+			try
+			{
+				stats.merge(results.get(i).get());
+			}
+			catch (InterruptedException | ExecutionException e)
+			{
+				System.err.println("Failed to process " + files.get(i) + ": " + e);
+				stats.files++;
+				stats.failedFiles++;
+			}
+		}
+		
+		return stats;
+	}
+	
+	private static boolean isWorldDataFile(Path path)
+	{
+		final Path parent = path.getParent();
+		final String name = path.getFileName().toString();
+		
+		if (parent == null || !Files.isRegularFile(path))
+		{
+			return false;
+		}
+		
+		final String parentName = parent.getFileName().toString();
+		
+		if (name.endsWith(".mca"))
+		{
+			return parentName.equals("region") || parentName.equals("entities");
+		}
+		
+		return name.endsWith(".dat") && (parentName.equals("playerdata") || name.equals("level.dat"));
+	}
+	
+	private ScaleDataEditor.Stats processFile(Path path)
+	{
+		final ScaleDataEditor.Stats stats = new ScaleDataEditor.Stats();
+		stats.files++;
+		
+		try
+		{
+			final boolean modified = path.getFileName().toString().endsWith(".mca") ? processRegion(path, stats) : processCompressedNbt(path, stats);
+			
+			if (modified)
+			{
+				stats.modifiedFiles++;
+			}
+		}
+		catch (IOException | RuntimeException e)
+		{
+			System.err.println("Failed to process " + path + ": " + e);
+			stats.failedFiles++;
+		}
+		
+		return stats;
+	}
+	
+	/**
+	 * Processes every chunk of a region file, then writes modified chunks back.
+	 * Chunks are rewritten in their current sectors if they still fit, and appended to the end of the file otherwise.
+	 *
+	 * @return true if any chunk was modified
+	 */
+	private boolean processRegion(Path path, ScaleDataEditor.Stats stats) throws IOException
+	{
+		final List<ModifiedChunk> modified = new ArrayList<>();
+		
+		try (final FileChannel channel = FileChannel.open(path, StandardOpenOption.READ))
+		{
+			final long size = channel.size();
+			
+			if (size < SECTOR_SIZE * 2)
+			{
+				return false;
+			}
+			
+			final MappedByteBuffer map = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+			
+			for (int i = 0; i < CHUNKS_PER_REGION; i++)
+			{
+				final int location = map.getInt(i * 4);
+				
+				if (location == 0)
+				{
+					continue;
+				}
+				
+				final long offset = (long) (location >>> 8) * SECTOR_SIZE;
+				final int sectors = location & 0xFF;
+				
+				if (offset + 5 > size)
+				{
+					stats.skippedChunks++;
+					continue;
+				}
+				
+				final int length = map.getInt((int) offset);
+				final byte compression = map.get((int) offset + 4);
+				
+				if (length < 1 || offset + 4 + length > size || (compression & EXTERNAL_FLAG) != 0)
+				{
+					stats.skippedChunks++;
+					continue;
+				}
+				
+				final ByteBuffer data = map.duplicate();
+				data.position((int) offset + 5).limit((int) offset + 4 + length);
+				
+				final Map<String, Object> root;
+				
+				try (final DataInputStream input = new DataInputStream(new BufferedInputStream(decompress(compression, new ByteBufferInputStream(data.slice())))))
+				{
+					root = OfflineNbt.readRoot(input);
+				}
+				catch (IOException e)
+				{
+					stats.skippedChunks++;
+					continue;
+				}
+				
+				if (this.editor.process(root, stats))
+				{
+					modified.add(new ModifiedChunk(i, offset, sectors, compression, compress(compression, root)));
+				}
+			}
+		}
+		
+		if (modified.isEmpty() || this.dryRun)
+		{
+			return !modified.isEmpty();
+		}
+		
+		try (final FileChannel channel = FileChannel.open(path, StandardOpenOption.READ, StandardOpenOption.WRITE))
+		{
+			long end = (channel.size() + SECTOR_SIZE - 1) / SECTOR_SIZE * SECTOR_SIZE;
+			
+			for (final ModifiedChunk chunk : modified)
+			{
+				final int sectors = (chunk.data.length + 5 + SECTOR_SIZE - 1) / SECTOR_SIZE;
+				
+				if (sectors > 0xFF)
+				{
+					System.err.println("Chunk " + chunk.index + " of " + path + " is too large to store in the region file, leaving it unchanged.");
+					continue;
+				}
+				
+				final ByteBuffer buffer = ByteBuffer.allocate(sectors * SECTOR_SIZE);
+				buffer.putInt(chunk.data.length + 1);
+				buffer.put(chunk.compression);
+				buffer.put(chunk.data);
+				buffer.rewind();
+				
+				if (sectors <= chunk.sectors)
+				{
+					writeFully(channel, buffer, chunk.offset);
+				}
+				else
+				{
+					writeFully(channel, buffer, end);
+					
+					final ByteBuffer location = ByteBuffer.allocate(4);
+					location.putInt((int) (end / SECTOR_SIZE) << 8 | sectors);
+					location.rewind();
+					writeFully(channel, location, chunk.index * 4);
+					
+					end += sectors * SECTOR_SIZE;
+				}
+			}
+		}
+		
+		return true;
+	}
+	
+	/**
+	 * Processes a gzip compressed NBT file, such as player data, and replaces it if modified.
+	 *
+	 * @return true if the file was modified
+	 */
+	private boolean processCompressedNbt(Path path, ScaleDataEditor.Stats stats) throws IOException
+	{
+		final Map<String, Object> root;
+		
+		try (final FileChannel channel = FileChannel.open(path, StandardOpenOption.READ))
+		{
+			final MappedByteBuffer map = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+			
+			try (final DataInputStream input = new DataInputStream(new BufferedInputStream(decompress(GZIP, new ByteBufferInputStream(map)))))
+			{
+				root = OfflineNbt.readRoot(input);
+			}
+		}
+		
+		if (!this.editor.process(root, stats))
+		{
+			return false;
+		}
+		
+		if (!this.dryRun)
+		{
+			final Path temp = path.resolveSibling(path.getFileName() + ".tmp");
+			Files.write(temp, compress(GZIP, root));
+			Files.move(temp, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+		}
+		
+		return true;
+	}
+	
+	static InputStream decompress(byte compression, InputStream input) throws IOException
+	{
+		switch (compression)
+		{
+			case GZIP:
+				return new GZIPInputStream(input);
+			case ZLIB:
+				return new InflaterInputStream(input);
+			case UNCOMPRESSED:
+				return input;
+			default:
+				throw new IOException("Unknown compression type " + compression);
+		}
+	}
+	
+	static byte[] compress(byte compression, Map<String, Object> root) throws IOException
+	{
+		final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		
+		final OutputStream output;
+		switch (compression)
+		{
+			case GZIP:
+				output = new GZIPOutputStream(bytes);
+				break;
+			case ZLIB:
+				output = new DeflaterOutputStream(bytes);
+				break;
+			default:
+				output = bytes;
+				break;
+		}
+		
+		try (final DataOutputStream data = new DataOutputStream(output))
+		{
+			OfflineNbt.writeRoot(data, root);
+		}
+		
+		return bytes.toByteArray();
+	}
+	
+	private static void writeFully(FileChannel channel, ByteBuffer buffer, long position) throws IOException
+	{
+		while (buffer.hasRemaining())
+		{
+			position += channel.write(buffer, position);
+		}
+	}
+	
+	private static final class ModifiedChunk
+	{
+		private final int index;
+		private final long offset;
+		private final int sectors;
+		private final byte compression;
+		private final byte[] data;
+		
+		private ModifiedChunk(int index, long offset, int sectors, byte compression, byte[] data)
+		{
+			this.index = index;
+			this.offset = offset;
+			this.sectors = sectors;
+			this.compression = compression;
+			this.data = data;
+		}
+	}
+	
+	private static final class ByteBufferInputStream extends InputStream
+	{
+		private final ByteBuffer buffer;
+		
+		private ByteBufferInputStream(ByteBuffer buffer)
+		{
+			this.buffer = buffer;
+		}
+		
+		@Override
+		public int read()
+		{
+			return this.buffer.hasRemaining() ? this.buffer.get() & 0xFF : -1;
+		}
+		
+		@Override
+		public int read(byte[] bytes, int offset, int length)
+		{
+			if (!this.buffer.hasRemaining())
+			{
+				return -1;
+			}
+			
+			length = Math.min(length, this.buffer.remaining());
+			this.buffer.get(bytes, offset, length);
+			
+			return length;
+		}
+	}
+}
@@ -0,0 +1,666 @@
+package virtuoel.pehkui.tool;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Objects;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.stream.Stream;
+
+/**
+ * Self check of the offline tool, run with {@code java -jar pehkui.jar --verify}.
+ * <p>Writes a small world with sample scale data in player data, {@code level.dat} and an entity region file to a temporary folder,
+ * runs each operation on a fresh copy of it, and reads the files back.
+ * Packed scale data is decoded the way {@code PackedScaleNbtUtils} reads it in game, and compared to what the game reads from the original compounds.
+ */
+final class ScaleDataToolCheck
+{
+	private static final String PLAYER_FILE = "playerdata/00000000-0000-0000-0000-000000000000.dat";
+	private static final String LEVEL_FILE = "level.dat";
+	private static final String REGION_FILE = "entities/r.0.0.mca";
+	
+	/**
+	 * Stands in for default values of a scale type, which the tool doesn't know.
+	 */
+	private static final String DEFAULT = "<default>";
+	
+	private static final float CLAMP_MIN = 0.5F;
+	private static final float CLAMP_MAX = 3.0F;
+	
+	private final List<String> failures = new ArrayList<>();
+	
+	private ScaleDataToolCheck()
+	{
+		
+	}
+	
+	/**
+	 * @return true if every check passed
+	 */
+	static boolean run()
+	{
+		final ScaleDataToolCheck check = new ScaleDataToolCheck();
+		Path root = null;
+		
+		try
+		{
+			root = Files.createTempDirectory("pehkui-verify");
+			
+			check.checkNbtRoundTrip();
+			check.checkStats(root);
+			check.checkDryRun(root);
+			check.checkMigrate(root);
+			check.checkClamp(root);
+			check.checkReset(root);
+		}
+		catch (IOException | RuntimeException e)
+		{
+			check.failures.add("Unexpected exception: " + e);
+		}
+		finally
+		{
+			if (root != null)
+			{
+				delete(root);
+			}
+		}
+		
+		for (final String failure : check.failures)
+		{
+			System.out.println("FAILED: " + failure);
+		}
+		
+		System.out.println(check.failures.isEmpty() ? "All checks passed." : String.format(Locale.ROOT, "%d checks failed.", check.failures.size()));
+		
+		return check.failures.isEmpty();
+	}
+	
+	private void check(boolean condition, String message)
+	{
+		if (!condition)
+		{
+			this.failures.add(message);
+		}
+	}
+	
+	private void checkNbtRoundTrip() throws IOException
+	{
+		final Map<String, Object> root = createPlayer();
+		final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		
+		try (final DataOutputStream output = new DataOutputStream(bytes))
+		{
+			OfflineNbt.writeRoot(output, root);
+		}
+		
+		final Map<String, Object> read;
+		
+		try (final DataInputStream input = new DataInputStream(new ByteArrayInputStream(bytes.toByteArray())))
+		{
+			read = OfflineNbt.readRoot(input);
+			check(input.read() == -1, "NBT reader left bytes unread");
+		}
+		
+		check(same(root, read), "NBT round trip changed the data");
+	}
+	
+	private void checkStats(Path root) throws IOException
+	{
+		final Path world = root.resolve("stats");
+		final ScaleDataEditor.Stats stats = runOperation(world, ScaleDataEditor.Operation.STATS, false);
+		
+		check(stats.modifiedEntities == 0 && stats.modifiedFiles == 0, "stats reported modifications");
+		
+		final ScaleDataEditor.TypeStats base = stats.types.get("pehkui:base");
+		check(base != null && base.entries == 4 && base.scaled == 4 && base.transitioning == 3, "stats counted pehkui:base wrong");
+		check(base != null && base.min == 0.25F && base.max == 2.5F, "stats found the wrong pehkui:base range");
+		
+		checkUnchanged(world, "stats");
+	}
+	
+	private void checkDryRun(Path root) throws IOException
+	{
+		final Path world = root.resolve("dry_run");
+		final ScaleDataEditor.Stats stats = runOperation(world, ScaleDataEditor.Operation.MIGRATE, true);
+		
+		check(stats.modifiedEntities == 4 && stats.modifiedFiles == 3, "dry run of migrate counted the wrong number of modifications");
+		
+		checkUnchanged(world, "a dry run");
+	}
+	
+	private void checkMigrate(Path root) throws IOException
+	{
+		final Path world = root.resolve("migrate");
+		final ScaleDataEditor.Stats stats = runOperation(world, ScaleDataEditor.Operation.MIGRATE, false);
+		
+		check(stats.modifiedEntities == 4 && stats.modifiedFiles == 3, "migrate counted the wrong number of modifications");
+		
+		final List<Map<String, Object>> before = getEntities(createPlayer(), createLevel(), createChunk());
+		final List<Map<String, Object>> after = readEntities(world);
+		
+		for (int i = 0; i < before.size(); i++)
+		{
+			final Map<String, Object> original = before.get(i);
+			final Map<String, Object> migrated = after.get(i);
+			
+			if (original.containsKey(ScaleDataEditor.PACKED_SCALE_DATA_KEY))
+			{
+				check(same(original, migrated), "migrate changed already packed entity " + i);
+				continue;
+			}
+			
+			check(!migrated.containsKey(ScaleDataEditor.SCALE_DATA_KEY), "migrate left the compound format in entity " + i);
+			check(same(withoutScaleData(original), withoutScaleData(migrated)), "migrate changed other data of entity " + i);
+			
+			final Object packed = migrated.get(ScaleDataEditor.PACKED_SCALE_DATA_KEY);
+			
+			if (!(packed instanceof byte[]))
+			{
+				this.failures.add("migrate wrote no packed data for entity " + i);
+				continue;
+			}
+			
+			@SuppressWarnings("unchecked")
+			final Map<String, Map<String, Object>> expected = readCompoundFormat((Map<String, Object>) original.get(ScaleDataEditor.SCALE_DATA_KEY));
+			final Map<String, Map<String, Object>> actual = readPackedFormat((byte[]) packed);
+			
+			check(expected.equals(actual), "packed data of entity " + i + " reads as " + actual + " instead of " + expected);
+		}
+	}
+	
+	@SuppressWarnings("unchecked")
+	private void checkClamp(Path root) throws IOException
+	{
+		final Path world = root.resolve("clamp");
+		final ScaleDataEditor.Stats stats = runOperation(world, ScaleDataEditor.Operation.CLAMP, false);
+		
+		check(stats.modifiedEntities == 4 && stats.modifiedFiles == 3, "clamp counted the wrong number of modifications");
+		
+		final List<Map<String, Object>> before = getEntities(createPlayer(), createLevel(), createChunk());
+		final List<Map<String, Object>> after = readEntities(world);
+		
+		for (int i = 0; i < before.size(); i++)
+		{
+			final Map<String, Object> original = before.get(i);
+			final Map<String, Object> clamped = after.get(i);
+			
+			check(same(withoutScaleData(original), withoutScaleData(clamped)), "clamp changed other data of entity " + i);
+			
+			final Object originalData = original.get(ScaleDataEditor.SCALE_DATA_KEY);
+			
+			if (!(originalData instanceof Map))
+			{
+				continue;
+			}
+			
+			final Map<String, Object> clampedData = (Map<String, Object>) clamped.get(ScaleDataEditor.SCALE_DATA_KEY);
+			
+			for (final Map.Entry<String, Object> type : ((Map<String, Object>) originalData).entrySet())
+			{
+				final Map<String, Object> values = (Map<String, Object>) type.getValue();
+				final Map<String, Object> clampedValues = (Map<String, Object>) clampedData.get(type.getKey());
+				
+				for (final Map.Entry<String, Object> value : values.entrySet())
+				{
+					Object expected = value.getValue();
+					
+					if (expected instanceof Float)
+					{
+						expected = Math.max(CLAMP_MIN, Math.min((Float) expected, CLAMP_MAX));
+					}
+					
+					check(same(expected, clampedValues.get(value.getKey())), "clamp wrote the wrong " + value.getKey() + " for " + type.getKey() + " of entity " + i);
+				}
+			}
+		}
+	}
+	
+	private void checkReset(Path root) throws IOException
+	{
+		final Path world = root.resolve("reset");
+		final ScaleDataEditor.Stats stats = runOperation(world, ScaleDataEditor.Operation.RESET, false);
+		
+		check(stats.modifiedEntities == 5 && stats.modifiedFiles == 3, "reset counted the wrong number of modifications");
+		
+		final List<Map<String, Object>> before = getEntities(createPlayer(), createLevel(), createChunk());
+		final List<Map<String, Object>> after = readEntities(world);
+		
+		for (int i = 0; i < before.size(); i++)
+		{
+			final Map<String, Object> reset = after.get(i);
+			
+			check(!reset.containsKey(ScaleDataEditor.SCALE_DATA_KEY) && !reset.containsKey(ScaleDataEditor.PACKED_SCALE_DATA_KEY), "reset left scale data in entity " + i);
+			check(same(withoutScaleData(before.get(i)), withoutScaleData(reset)), "reset changed other data of entity " + i);
+		}
+	}
+	
+	private ScaleDataEditor.Stats runOperation(Path world, ScaleDataEditor.Operation operation, boolean dryRun) throws IOException
+	{
+		writeWorld(world);
+		
+		final ScaleDataEditor.Stats stats = new ScaleDataTool(new ScaleDataEditor(operation, CLAMP_MIN, CLAMP_MAX), dryRun).run(world, 2);
+		final String name = operation.name().toLowerCase(Locale.ROOT);
+		
+		check(stats.files == 3 && stats.failedFiles == 0 && stats.skippedChunks == 0, name + " did not read every file");
+		check(stats.entities == 4 && stats.packedEntities == 1, name + " found the wrong number of entities");
+		
+		return stats;
+	}
+	
+	private void checkUnchanged(Path world, String operation) throws IOException
+	{
+		check(same(createPlayer(), readCompressed(world.resolve(PLAYER_FILE))), operation + " changed player data");
+		check(same(createLevel(), readCompressed(world.resolve(LEVEL_FILE))), operation + " changed level.dat");
+		check(same(createChunk(), readRegion(world.resolve(REGION_FILE))), operation + " changed the region file");
+	}
+	
+	private static void writeWorld(Path world) throws IOException
+	{
+		Files.createDirectories(world.resolve(PLAYER_FILE).getParent());
+		Files.createDirectories(world.resolve(REGION_FILE).getParent());
+		
+		Files.write(world.resolve(PLAYER_FILE), ScaleDataTool.compress(ScaleDataTool.GZIP, createPlayer()));
+		Files.write(world.resolve(LEVEL_FILE), ScaleDataTool.compress(ScaleDataTool.GZIP, createLevel()));
+		
+		final byte[] data = ScaleDataTool.compress(ScaleDataTool.ZLIB, createChunk());
+		final int sectors = (data.length + 5 + ScaleDataTool.SECTOR_SIZE - 1) / ScaleDataTool.SECTOR_SIZE;
+		final ByteBuffer region = ByteBuffer.allocate((2 + sectors) * ScaleDataTool.SECTOR_SIZE);
+		region.putInt(0, 2 << 8 | sectors);
+		region.position(2 * ScaleDataTool.SECTOR_SIZE);
+		region.putInt(data.length + 1);
+		region.put(ScaleDataTool.ZLIB);
+		region.put(data);
+		
+		Files.write(world.resolve(REGION_FILE), region.array());
+	}
+	
+	private static List<Map<String, Object>> readEntities(Path world) throws IOException
+	{
+		return getEntities(readCompressed(world.resolve(PLAYER_FILE)), readCompressed(world.resolve(LEVEL_FILE)), readRegion(world.resolve(REGION_FILE)));
+	}
+	
+	/**
+	 * @return Every entity of the sample world, in the same order for the original and the processed files
+	 */
+	@SuppressWarnings("unchecked")
+	private static List<Map<String, Object>> getEntities(Map<String, Object> player, Map<String, Object> level, Map<String, Object> chunk)
+	{
+		final List<Map<String, Object>> entities = new ArrayList<>();
+		
+		entities.add(player);
+		entities.add((Map<String, Object>) ((OfflineNbt.TagList) player.get("Passengers")).elements.get(0));
+		entities.add((Map<String, Object>) ((Map<String, Object>) level.get("Data")).get("Player"));
+		
+		for (final Object entity : ((OfflineNbt.TagList) chunk.get("Entities")).elements)
+		{
+			entities.add((Map<String, Object>) entity);
+		}
+		
+		return entities;
+	}
+	
+	private static Map<String, Object> readCompressed(Path path) throws IOException
+	{
+		try (final DataInputStream input = new DataInputStream(new BufferedInputStream(ScaleDataTool.decompress(ScaleDataTool.GZIP, Files.newInputStream(path)))))
+		{
+			return OfflineNbt.readRoot(input);
+		}
+	}
+	
+	private static Map<String, Object> readRegion(Path path) throws IOException
+	{
+		final ByteBuffer region = ByteBuffer.wrap(Files.readAllBytes(path));
+		final int offset = (region.getInt(0) >>> 8) * ScaleDataTool.SECTOR_SIZE;
+		final int length = region.getInt(offset);
+		final byte compression = region.get(offset + 4);
+		
+		try (final DataInputStream input = new DataInputStream(ScaleDataTool.decompress(compression, new ByteArrayInputStream(region.array(), offset + 5, length - 1))))
+		{
+			return OfflineNbt.readRoot(input);
+		}
+	}
+	
+	private static Map<String, Object> createScaleData()
+	{
+		final Map<String, Object> base = new LinkedHashMap<>();
+		base.put("scale", 2.5F);
+		base.put("previous", 2.0F);
+		base.put("initial", 1.0F);
+		base.put("target", 4.0F);
+		base.put("ticks", 5);
+		base.put("total_ticks", 40);
+		base.put("persistent", (byte) 1);
+		base.put("easing", "pehkui:quadratic_in_out");
+		base.put("baseValueModifiers", list(OfflineNbt.STRING, "pehkui:base_multiplier"));
+		
+		final Map<String, Object> width = new LinkedHashMap<>();
+		width.put("scale", 0.5F);
+		
+		final Map<String, Object> height = new LinkedHashMap<>();
+		height.put("target", 3.5F);
+		height.put("persistent", (byte) 0);
+		height.put("baseValueModifiers", list(OfflineNbt.COMPOUND, compound("id", "pehkui:height_multiplier")));
+		
+		final Map<String, Object> scaleData = new LinkedHashMap<>();
+		scaleData.put("pehkui:base", base);
+		scaleData.put("pehkui:width", width);
+		scaleData.put("pehkui:height", height);
+		scaleData.put("pehkui:motion", new LinkedHashMap<>());
+		
+		return scaleData;
+	}
+	
+	private static Map<String, Object> createSmallScaleData()
+	{
+		final Map<String, Object> scaleData = new LinkedHashMap<>();
+		scaleData.put("pehkui:base", compound("scale", 0.25F));
+		
+		return scaleData;
+	}
+	
+	private static Map<String, Object> createEntity(String id, Map<String, Object> scaleData)
+	{
+		final Map<String, Object> entity = new LinkedHashMap<>();
+		entity.put("id", id);
+		entity.put("Pos", list(OfflineNbt.DOUBLE, 0.5D, 64.0D, -0.5D));
+		entity.put(ScaleDataEditor.SCALE_DATA_KEY, scaleData);
+		
+		return entity;
+	}
+	
+	/**
+	 * @return Player with a passenger and a compound holding every NBT type
+	 */
+	private static Map<String, Object> createPlayer()
+	{
+		final Map<String, Object> types = new LinkedHashMap<>();
+		types.put("byte", (byte) -1);
+		types.put("short", (short) 300);
+		types.put("int", 70000);
+		types.put("long", Long.MIN_VALUE);
+		types.put("float", Float.MIN_VALUE);
+		types.put("double", Math.PI);
+		types.put("byteArray", new byte[] { 1, -2, 3 });
+		types.put("string", "Gr\u00F6\u00DFe \u2713 \uD83D\uDE00");
+		types.put("emptyList", new OfflineNbt.TagList(OfflineNbt.END, 0));
+		types.put("nestedList", list(OfflineNbt.LIST, list(OfflineNbt.INT, 1, 2), list(OfflineNbt.STRING)));
+		types.put("intArray", new int[] { Integer.MIN_VALUE, 0, Integer.MAX_VALUE });
+		types.put("longArray", new long[] { -1L, 1L << 40 });
+		types.put("compound", new LinkedHashMap<>());
+		
+		final Map<String, Object> player = createEntity("minecraft:player", createScaleData());
+		player.put("Passengers", list(OfflineNbt.COMPOUND, createEntity("minecraft:pig", createSmallScaleData())));
+		player.put("types", types);
+		
+		return player;
+	}
+	
+	private static Map<String, Object> createLevel()
+	{
+		final Map<String, Object> data = new LinkedHashMap<>();
+		data.put("LevelName", "verify");
+		data.put("Player", createEntity("minecraft:player", createScaleData()));
+		
+		return compound("Data", data);
+	}
+	
+	/**
+	 * @return Entity chunk with one entity in the compound format and one already in the packed format
+	 */
+	private static Map<String, Object> createChunk()
+	{
+		final Map<String, Object> packed = createEntity("minecraft:cow", createSmallScaleData());
+		packed.put(ScaleDataEditor.PACKED_SCALE_DATA_KEY, ScaleDataEditor.pack(createSmallScaleData()));
+		packed.remove(ScaleDataEditor.SCALE_DATA_KEY);
+		
+		final Map<String, Object> chunk = new LinkedHashMap<>();
+		chunk.put("DataVersion", 3120);
+		chunk.put("Position", new int[] { 0, 0 });
+		chunk.put("Entities", list(OfflineNbt.COMPOUND, createEntity("minecraft:zombie", createScaleData()), packed));
+		
+		return chunk;
+	}
+	
+	private static Map<String, Object> compound(String key, Object value)
+	{
+		final Map<String, Object> compound = new LinkedHashMap<>();
+		compound.put(key, value);
+		
+		return compound;
+	}
+	
+	private static OfflineNbt.TagList list(byte elementType, Object... elements)
+	{
+		final OfflineNbt.TagList list = new OfflineNbt.TagList(elementType, elements.length);
+		list.elements.addAll(Arrays.asList(elements));
+		
+		return list;
+	}
+	
+	private static Map<String, Object> withoutScaleData(Map<String, Object> entity)
+	{
+		final Map<String, Object> copy = new LinkedHashMap<>(entity);
+		copy.remove(ScaleDataEditor.SCALE_DATA_KEY);
+		copy.remove(ScaleDataEditor.PACKED_SCALE_DATA_KEY);
+		copy.remove("Passengers");
+		
+		return copy;
+	}
+	
+	/**
+	 * Reads scale data in the compound format the way {@code ScaleData#readNbt} does, leaving out the previous scale,
+	 * which the packed format doesn't store. Types that only hold default values are left out, same as the packed format does.
+	 */
+	@SuppressWarnings("unchecked")
+	private static Map<String, Map<String, Object>> readCompoundFormat(Map<String, Object> scaleData)
+	{
+		final Map<String, Map<String, Object>> types = new TreeMap<>();
+		
+		for (final Map.Entry<String, Object> entry : scaleData.entrySet())
+		{
+			final Map<String, Object> data = (Map<String, Object>) entry.getValue();
+			final Map<String, Object> values = new LinkedHashMap<>();
+			
+			final Object scale = data.get("scale") instanceof Float ? data.get("scale") : DEFAULT;
+			values.put("scale", scale);
+			values.put("initial", data.get("initial") instanceof Float ? data.get("initial") : scale);
+			values.put("target", data.get("target") instanceof Float ? data.get("target") : scale);
+			values.put("ticks", data.get("ticks") instanceof Number ? ((Number) data.get("ticks")).intValue() : 0);
+			values.put("total_ticks", data.get("total_ticks") instanceof Number ? ((Number) data.get("total_ticks")).intValue() : DEFAULT);
+			values.put("persistent", data.get("persistent") instanceof Number ? ((Number) data.get("persistent")).byteValue() != 0 : null);
+			values.put("easing", data.get("easing") instanceof String ? data.get("easing") : null);
+			values.put("modifiers", new TreeSet<>(ScaleDataEditor.getModifierIds(data.get("baseValueModifiers"))));
+			
+			if (!values.equals(getDefaultValues()))
+			{
+				types.put(entry.getKey(), values);
+			}
+		}
+		
+		return types;
+	}
+	
+	/**
+	 * Reads scale data in the packed format the way {@code PackedScaleNbtUtils#readScales} and {@code ScaleData#readPackedNbt} do.
+	 */
+	private Map<String, Map<String, Object>> readPackedFormat(byte[] bytes) throws IOException
+	{
+		final Map<String, Map<String, Object>> types = new TreeMap<>();
+		final DataInputStream input = new DataInputStream(new ByteArrayInputStream(bytes));
+		
+		check(input.readByte() == ScaleDataEditor.PACKED_VERSION, "packed data has the wrong version");
+		
+		final String[] ids = new String[readVarInt(input)];
+		
+		for (int i = 0; i < ids.length; i++)
+		{
+			final byte[] id = new byte[readVarInt(input)];
+			input.readFully(id);
+			ids[i] = new String(id, StandardCharsets.UTF_8);
+		}
+		
+		for (int i = readVarInt(input); i > 0; i--)
+		{
+			final String type = ids[readVarInt(input)];
+			final byte[] data = new byte[readVarInt(input)];
+			input.readFully(data);
+			
+			final DataInputStream values = new DataInputStream(new ByteArrayInputStream(data));
+			final int fields = values.readUnsignedByte();
+			final Map<String, Object> read = new LinkedHashMap<>();
+			
+			read.put("scale", (fields & ScaleDataEditor.PACKED_BASE_SCALE) != 0 ? (Object) values.readFloat() : DEFAULT);
+			read.put("initial", (fields & ScaleDataEditor.PACKED_INITIAL_SCALE) != 0 ? (Object) values.readFloat() : DEFAULT);
+			read.put("target", (fields & ScaleDataEditor.PACKED_TARGET_SCALE) != 0 ? (Object) values.readFloat() : DEFAULT);
+			read.put("ticks", (fields & ScaleDataEditor.PACKED_SCALE_TICKS) != 0 ? readVarInt(values) : 0);
+			read.put("total_ticks", (fields & ScaleDataEditor.PACKED_TOTAL_SCALE_TICKS) != 0 ? (Object) readVarInt(values) : DEFAULT);
+			read.put("persistent", (fields & ScaleDataEditor.PACKED_PERSISTENCE) != 0 ? values.readBoolean() : null);
+			read.put("easing", (fields & ScaleDataEditor.PACKED_EASING) != 0 ? ids[readVarInt(values)] : null);
+			
+			final TreeSet<String> modifiers = new TreeSet<>();
+			
+			if ((fields & ScaleDataEditor.PACKED_MODIFIERS) != 0)
+			{
+				for (int m = readVarInt(values); m > 0; m--)
+				{
+					modifiers.add(ids[readVarInt(values)]);
+				}
+			}
+			
+			read.put("modifiers", modifiers);
+			
+			check(values.read() == -1, "packed data of " + type + " is longer than its fields");
+			types.put(type, read);
+		}
+		
+		check(input.read() == -1, "packed data has trailing bytes");
+		
+		return types;
+	}
+	
+	private static Map<String, Object> getDefaultValues()
+	{
+		final Map<String, Object> values = new LinkedHashMap<>();
+		values.put("scale", DEFAULT);
+		values.put("initial", DEFAULT);
+		values.put("target", DEFAULT);
+		values.put("ticks", 0);
+		values.put("total_ticks", DEFAULT);
+		values.put("persistent", null);
+		values.put("easing", null);
+		values.put("modifiers", new TreeSet<String>());
+		
+		return values;
+	}
+	
+	private static int readVarInt(DataInputStream input) throws IOException
+	{
+		int value = 0;
+		int shift = 0;
+		byte b;
+		
+		do
+		{
+			if (shift >= 35)
+			{
+				throw new IOException("VarInt too big");
+			}
+			
+			b = input.readByte();
+			value |= (b & 127) << shift;
+			shift += 7;
+		}
+		while ((b & 128) != 0);
+		
+		return value;
+	}
+	
+	/**
+	 * Compares NBT values read by {@link OfflineNbt}, including arrays and lists.
+	 */
+	@SuppressWarnings("unchecked")
+	private static boolean same(Object a, Object b)
+	{
+		if (a instanceof Map && b instanceof Map)
+		{
+			final Map<String, Object> mapA = (Map<String, Object>) a;
+			final Map<String, Object> mapB = (Map<String, Object>) b;
+			
+			if (mapA.size() != mapB.size())
+			{
+				return false;
+			}
+			
+			for (final Map.Entry<String, Object> entry : mapA.entrySet())
+			{
+				if (!mapB.containsKey(entry.getKey()) || !same(entry.getValue(), mapB.get(entry.getKey())))
+				{
+					return false;
+				}
+			}
+			
+			return true;
+		}
+		else if (a instanceof OfflineNbt.TagList && b instanceof OfflineNbt.TagList)
+		{
+			final OfflineNbt.TagList listA = (OfflineNbt.TagList) a;
+			final OfflineNbt.TagList listB = (OfflineNbt.TagList) b;
+			
+			if (listA.elementType != listB.elementType || listA.elements.size() != listB.elements.size())
+			{
+				return false;
+			}
+			
+			for (int i = 0; i < listA.elements.size(); i++)
+			{
+				if (!same(listA.elements.get(i), listB.elements.get(i)))
+				{
+					return false;
+				}
+			}
+			
+			return true;
+		}
+		else if (a instanceof byte[] && b instanceof byte[])
+		{
+			return Arrays.equals((byte[]) a, (byte[]) b);
+		}
+		else if (a instanceof int[] && b instanceof int[])
+		{
+			return Arrays.equals((int[]) a, (int[]) b);
+		}
+		else if (a instanceof long[] && b instanceof long[])
+		{
+			return Arrays.equals((long[]) a, (long[]) b);
+		}
+		
+		return Objects.equals(a, b);
+	}
+	
+	private static void delete(Path root)
+	{
+		try (final Stream<Path> paths = Files.walk(root))
+		{
+			paths.sorted(Comparator.reverseOrder()).forEach(path -> path.toFile().delete());
+		}
+		catch (IOException e)
+		{
+			System.err.println("Failed to delete " + root + ": " + e);
+		}
+	}
+}
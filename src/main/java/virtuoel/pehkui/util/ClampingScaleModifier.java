@@ -2,29 +2,61 @@ package virtuoel.pehkui.util;
 
 import java.util.function.Supplier;
 
+import org.jetbrains.annotations.ApiStatus;
+
 import virtuoel.pehkui.api.ScaleData;
 import virtuoel.pehkui.api.ScaleModifier;
 
 public class ClampingScaleModifier extends ScaleModifier
 {
 	private final Supplier<Double> min, max;
+	private final boolean configBacked;
 	
 	public ClampingScaleModifier(final Supplier<Double> min, final Supplier<Double> max, final float priority)
+	{
+		this(min, max, priority, false);
+	}
+	
+	private ClampingScaleModifier(final Supplier<Double> min, final Supplier<Double> max, final float priority, final boolean configBacked)
 	{
 		super(priority);
 		this.min = min;
 		this.max = max;
+		this.configBacked = configBacked;
+	}
+	
+	/**
+	 * Creates a modifier whose bounds only come from Pehkui's config, so that scales computed with it
+	 * can stay cached until config values change.
+	 */
+	@ApiStatus.Internal
+	public static ClampingScaleModifier ofConfig(final Supplier<Double> min, final Supplier<Double> max, final float priority)
+	{
+		return new ClampingScaleModifier(min, max, priority, true);
+	}
+	
+	/**
+	 * @return true if the bounds of this modifier are config values, false if they come from arbitrary suppliers
+	 */
+	boolean isConfigBacked()
+	{
+		return configBacked;
 	}
 	
 	@Override
 	public float modifyScale(final ScaleData scaleData, float modifiedScale, final float delta)
 	{
-		return Math.max(Math.min(modifiedScale, max.get().floatValue()), min.get().floatValue());
+		return clamp(modifiedScale);
 	}
 	
 	@Override
 	public float modifyPrevScale(final ScaleData scaleData, float modifiedScale)
 	{
-		return Math.max(Math.min(modifiedScale, max.get().floatValue()), min.get().floatValue());
+		return clamp(modifiedScale);
+	}
+	
+	public float clamp(float scale)
+	{
+		return Math.max(Math.min(scale, max.get().floatValue()), min.get().floatValue());
 	}
 }
@@ -3,13 +3,16 @@ package virtuoel.pehkui.util;
 import java.io.IOException;
 import java.nio.file.Files;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
 import java.util.Objects;
+import java.util.WeakHashMap;
 import java.util.function.BiConsumer;
 import java.util.function.BiFunction;
 import java.util.function.Consumer;
@@ -37,6 +40,7 @@ import virtuoel.kanos_config.api.JsonConfigHandler;
 import virtuoel.kanos_config.api.MutableConfigEntry;
 import virtuoel.pehkui.Pehkui;
 import virtuoel.pehkui.api.PehkuiConfig;
+import virtuoel.pehkui.api.ScaleData;
 
 public class ConfigSyncUtils
 {
@@ -105,9 +109,32 @@ public class ConfigSyncUtils
 	
 	public static void syncConfigs(final Collection<ServerPlayerEntity> players)
 	{
-		for (final ServerPlayerEntity player : players)
+		syncConfigs(players, SYNCED_CONFIGS.values());
+	}
+	
+	public static void syncConfigs(final Collection<ServerPlayerEntity> players, final Collection<SyncableConfigEntry<?>> configEntries)
+	{
+		syncConfigs(players, configEntries, false);
+	}
+	
+	/**
+	 * Sends every synced config to the given players, including values they were already sent, for clients that fell out of sync.
+	 */
+	public static void resyncConfigs(final Collection<ServerPlayerEntity> players)
+	{
+		syncConfigs(players, SYNCED_CONFIGS.values(), true);
+	}
+	
+	private static void syncConfigs(final Collection<ServerPlayerEntity> players, final Collection<SyncableConfigEntry<?>> configEntries, final boolean force)
+	{
+		if (NETWORKING_API_LOADED)
 		{
-			syncConfigs(player.networkHandler, SYNCED_CONFIGS.values());
+			final EncodedConfigs encoded = new EncodedConfigs(configEntries);
+			
+			for (final ServerPlayerEntity player : players)
+			{
+				syncConfigs(player.networkHandler, encoded, force);
+			}
 		}
 	}
 	
@@ -138,11 +165,56 @@ public class ConfigSyncUtils
 	{
 		if (NETWORKING_API_LOADED)
 		{
-			if (ServerPlayNetworking.canSend(networkHandler, Pehkui.CONFIG_SYNC_PACKET))
+			syncConfigs(networkHandler, new EncodedConfigs(configEntries), false);
+		}
+	}
+	
+	/**
+	 * Encoded config values last sent to each player. Weak keys drop the entries of disconnected players.
+	 */
+	private static final Map<ServerPlayNetworkHandler, SentConfigs> SENT_CONFIGS = new WeakHashMap<>();
+	
+	/**
+	 * Sends the given configs to a player, leaving out entries whose encoded values the player was already sent unless forced.
+	 */
+	private static void syncConfigs(final ServerPlayNetworkHandler networkHandler, final EncodedConfigs encoded, final boolean force)
+	{
+		if (!ServerPlayNetworking.canSend(networkHandler, Pehkui.CONFIG_SYNC_PACKET))
+		{
+			return;
+		}
+		
+		SentConfigs sent = SENT_CONFIGS.get(networkHandler);
+		
+		if (sent == null)
+		{
+			SENT_CONFIGS.put(networkHandler, sent = new SentConfigs());
+		}
+		
+		final List<Entry<String, byte[]>> changed = new ArrayList<>();
+		
+		for (final Entry<String, byte[]> entry : encoded.values.entrySet())
+		{
+			if (force || !Arrays.equals(sent.values.get(entry.getKey()), entry.getValue()))
 			{
-				networkHandler.sendPacket(createConfigSyncPacket(configEntries));
+				changed.add(entry);
 			}
 		}
+		
+		if (!changed.isEmpty())
+		{
+			final PacketByteBuf buffer = new PacketByteBuf(Unpooled.buffer());
+			
+			buffer.writeVarInt(changed.size());
+			for (final Entry<String, byte[]> entry : changed)
+			{
+				buffer.writeString(entry.getKey());
+				buffer.writeBytes(entry.getValue());
+				sent.values.put(entry.getKey(), entry.getValue());
+			}
+			
+			networkHandler.sendPacket(new CustomPayloadS2CPacket(Pehkui.CONFIG_SYNC_PACKET, buffer));
+		}
 	}
 	
 	@SuppressWarnings({ "unchecked", "rawtypes" })
@@ -160,6 +232,33 @@ public class ConfigSyncUtils
 		return new CustomPayloadS2CPacket(Pehkui.CONFIG_SYNC_PACKET, buffer);
 	}
 	
+	private static class EncodedConfigs
+	{
+		final Map<String, byte[]> values = new LinkedHashMap<>();
+		
+		@SuppressWarnings({ "unchecked", "rawtypes" })
+		EncodedConfigs(final Collection<SyncableConfigEntry<?>> configEntries)
+		{
+			final PacketByteBuf buffer = new PacketByteBuf(Unpooled.buffer());
+			
+			byte[] bytes;
+			for (final SyncableConfigEntry<?> entry : configEntries)
+			{
+				((ConfigEntryCodec) SYNCED_CONFIG_CODECS.get(entry.getName())).write(buffer, entry);
+				bytes = new byte[buffer.readableBytes()];
+				buffer.readBytes(bytes);
+				buffer.clear();
+				
+				values.put(entry.getName(), bytes);
+			}
+		}
+	}
+	
+	private static class SentConfigs
+	{
+		final Map<String, byte[]> values = new HashMap<>();
+	}
+	
 	@SuppressWarnings({ "unchecked", "rawtypes" })
 	public static Runnable readConfigs(final PacketByteBuf buffer)
 	{
@@ -282,7 +381,7 @@ public class ConfigSyncUtils
 		final ArgumentBuilder<ServerCommandSource, ?> builder = CommandManager.literal("sync")
 			.executes(context ->
 			{
-				syncConfigs(context.getSource().getWorld().getServer().getPlayerManager().getPlayerList());
+				resyncConfigs(context.getSource().getWorld().getServer().getPlayerManager().getPlayerList());
 				
 				return 1;
 			});
@@ -310,6 +409,7 @@ public class ConfigSyncUtils
 					config.onConfigChanged();
 					config.save(disk);
 					config.get();
+					ScaleData.invalidateAllCachedScales();
 					
 					syncConfigs(context.getSource().getWorld().getServer().getPlayerManager().getPlayerList());
 					
@@ -324,6 +424,7 @@ public class ConfigSyncUtils
 					{
 						Files.deleteIfExists(FabricLoader.getInstance().getConfigDir().resolve(Pehkui.MOD_ID).resolve("config.json").normalize());
 						config.get();
+						ScaleData.invalidateAllCachedScales();
 						syncConfigs(context.getSource().getWorld().getServer().getPlayerManager().getPlayerList());
 						
 						return 1;
@@ -410,10 +511,7 @@ public class ConfigSyncUtils
 				false
 			);
 			
-			for (final ServerPlayerEntity p : context.getSource().getWorld().getServer().getPlayerManager().getPlayerList())
-			{
-				syncConfigs(p.networkHandler);
-			}
+			syncConfigs(context.getSource().getWorld().getServer().getPlayerManager().getPlayerList());
 			
 			return 1;
 		});
@@ -466,12 +564,7 @@ public class ConfigSyncUtils
 						false
 					);
 					
-					final Collection<SyncableConfigEntry<?>> cfgs = Collections.singleton(cfg);
-					
-					for (final ServerPlayerEntity p : context.getSource().getWorld().getServer().getPlayerManager().getPlayerList())
-					{
-						syncConfigs(p.networkHandler, cfgs);
-					}
+					syncConfigs(context.getSource().getWorld().getServer().getPlayerManager().getPlayerList(), Collections.singleton(cfg));
 					
 					return 1;
 				});
@@ -505,6 +598,7 @@ public class ConfigSyncUtils
 		public void setSyncedValue(final T value)
 		{
 			syncedValue = value;
+			ScaleData.invalidateAllCachedScales();
 		}
 		
 		public boolean isSynced()
@@ -576,6 +670,7 @@ public class ConfigSyncUtils
 		public void accept(final T t)
 		{
 			consumer.accept(t);
+			ScaleData.invalidateAllCachedScales();
 		}
 		
 		@Override
@@ -588,6 +683,7 @@ public class ConfigSyncUtils
 		public void setValue(final T t)
 		{
 			consumer.accept(t);
+			ScaleData.invalidateAllCachedScales();
 		}
 	}
 }
@@ -0,0 +1,203 @@
+package virtuoel.pehkui.util;
+
+import java.util.Collections;
+import java.util.Map;
+import java.util.SortedSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.IntFunction;
+
+import org.jetbrains.annotations.Nullable;
+
+import it.unimi.dsi.fastutil.floats.Float2FloatFunction;
+import net.minecraft.nbt.NbtCompound;
+import net.minecraft.network.PacketByteBuf;
+import net.minecraft.util.Identifier;
+import virtuoel.pehkui.api.ScaleData;
+import virtuoel.pehkui.api.ScaleModifier;
+import virtuoel.pehkui.api.ScaleType;
+
+/**
+ * Shared read-only scale data holding the default values of a scale type.
+ * Used in place of scale data that an entity has not materialized yet, and never handed out to API callers.
+ * <p>Every method that would modify it throws {@link UnsupportedOperationException}.
+ */
+final class DefaultScaleData extends ScaleData
+{
+	private static final Map<ScaleType, DefaultScaleData> INSTANCES = new ConcurrentHashMap<>();
+	
+	static DefaultScaleData of(ScaleType scaleType)
+	{
+		return INSTANCES.computeIfAbsent(scaleType, DefaultScaleData::new);
+	}
+	
+	private final SortedSet<ScaleModifier> baseValueModifiers;
+	private volatile CachedScales cachedScales;
+	
+	private DefaultScaleData(ScaleType scaleType)
+	{
+		super(scaleType, null);
+		
+		this.baseValueModifiers = Collections.unmodifiableSortedSet(super.getBaseValueModifiers());
+	}
+	
+	/**
+	 * Checks whether the given default chain gives the same scale for every entity, which is the case if it only has
+	 * modifiers that are known to depend on nothing but config values.
+	 */
+	static boolean isCacheable(ScaleModifierChain chain)
+	{
+		return chain.isTracked() && chain.getDependencies().length == 0;
+	}
+	
+	/**
+	 * Gets the scale computed from a {@link #isCacheable(ScaleModifierChain) cacheable} default chain.
+	 * The computed values are kept until the default chain of the type changes or config values that modifiers may read change.
+	 */
+	float getCachedScale(ScaleModifierChain chain, boolean prev)
+	{
+		final int epoch = ScaleData.getCacheEpoch();
+		
+		CachedScales cached = this.cachedScales;
+		
+		if (cached == null || cached.chain != chain || cached.epoch != epoch)
+		{
+			float scale = getBaseScale();
+			float prevScale = getPrevBaseScale();
+			
+			for (final ScaleModifier m : chain)
+			{
+				scale = m.modifyScale(this, scale, 1.0F);
+				prevScale = m.modifyPrevScale(this, prevScale);
+			}
+			
+			cached = new CachedScales(chain, epoch, scale, prevScale);
+			this.cachedScales = cached;
+		}
+		
+		return prev ? cached.prevScale : cached.scale;
+	}
+	
+	private static final class CachedScales
+	{
+		private final ScaleModifierChain chain;
+		private final int epoch;
+		private final float scale;
+		private final float prevScale;
+		
+		private CachedScales(ScaleModifierChain chain, int epoch, float scale, float prevScale)
+		{
+			this.chain = chain;
+			this.epoch = epoch;
+			this.scale = scale;
+			this.prevScale = prevScale;
+		}
+	}
+	
+	@Override
+	public void tick()
+	{
+		throw new UnsupportedOperationException();
+	}
+	
+	@Override
+	public SortedSet<ScaleModifier> getBaseValueModifiers()
+	{
+		return this.baseValueModifiers == null ? super.getBaseValueModifiers() : this.baseValueModifiers;
+	}
+	
+	@Override
+	public ScaleModifierChain getModifierChain()
+	{
+		return getScaleType().getDefaultModifierChain();
+	}
+	
+	@Override
+	public void setModifierChain(ScaleModifierChain chain)
+	{
+		throw new UnsupportedOperationException();
+	}
+	
+	@Override
+	public void setBaseScale(float scale)
+	{
+		throw new UnsupportedOperationException();
+	}
+	
+	@Override
+	public void setScale(float scale)
+	{
+		throw new UnsupportedOperationException();
+	}
+	
+	@Override
+	public void setTargetScale(float targetScale)
+	{
+		throw new UnsupportedOperationException();
+	}
+	
+	@Override
+	public void setScaleTickDelay(int ticks)
+	{
+		throw new UnsupportedOperationException();
+	}
+	
+	@Override
+	public void setPersistence(@Nullable Boolean persistent)
+	{
+		throw new UnsupportedOperationException();
+	}
+	
+	@Override
+	public void setEasing(@Nullable Float2FloatFunction easing)
+	{
+		throw new UnsupportedOperationException();
+	}
+	
+	@Override
+	public void markForSync(boolean sync)
+	{
+		throw new UnsupportedOperationException();
+	}
+	
+	@Override
+	public void onUpdate()
+	{
+		throw new UnsupportedOperationException();
+	}
+	
+	@Override
+	public void readReceivedValues(ReceivedValues values)
+	{
+		throw new UnsupportedOperationException();
+	}
+	
+	@Override
+	public void readNbt(NbtCompound tag)
+	{
+		throw new UnsupportedOperationException();
+	}
+	
+	@Override
+	public void readPackedNbt(PacketByteBuf buffer, IntFunction<Identifier> palette)
+	{
+		throw new UnsupportedOperationException();
+	}
+	
+	@Override
+	public ScaleData resetScale(boolean notifyListener)
+	{
+		throw new UnsupportedOperationException();
+	}
+	
+	@Override
+	public ScaleData fromScale(ScaleData scaleData, boolean notifyListener)
+	{
+		throw new UnsupportedOperationException();
+	}
+	
+	@Override
+	public ScaleData averagedFromScales(ScaleData scaleData, ScaleData... scales)
+	{
+		throw new UnsupportedOperationException();
+	}
+}
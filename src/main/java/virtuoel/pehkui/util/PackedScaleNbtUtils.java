@@ -0,0 +1,159 @@
+package virtuoel.pehkui.util;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.jetbrains.annotations.Nullable;
+
+import io.netty.buffer.Unpooled;
+import it.unimi.dsi.fastutil.objects.Object2IntMap;
+import it.unimi.dsi.fastutil.objects.Object2IntOpenHashMap;
+import net.fabricmc.fabric.api.util.NbtType;
+import net.minecraft.nbt.NbtCompound;
+import net.minecraft.network.PacketByteBuf;
+import net.minecraft.util.Identifier;
+import virtuoel.pehkui.Pehkui;
+import virtuoel.pehkui.api.PehkuiConfig;
+import virtuoel.pehkui.api.ScaleData;
+import virtuoel.pehkui.api.ScaleRegistries;
+import virtuoel.pehkui.api.ScaleType;
+
+/**
+ * Packed binary format for the scale data of an entity, written instead of the compound format if {@link PehkuiConfig.Common#packedScaleNbt} is enabled.
+ * <p>The scales of an entity are stored as a single byte array: a format version, a palette of every identifier used,
+ * then each scale type as a palette index, the byte length of its values, and its values.
+ * Entity NBT can be copied between worlds by structures and commands, so each entity carries its own palette.
+ * Both formats are always readable, regardless of config.
+ */
+public class PackedScaleNbtUtils
+{
+	public static final String KEY = Pehkui.MOD_ID + ":scale_data_packed";
+	
+	private static final byte VERSION = 1;
+	
+	/**
+	 * @return Whether the given NBT holds scale data in the packed format
+	 */
+	public static boolean hasPackedScales(NbtCompound nbt)
+	{
+		return nbt.contains(KEY, NbtType.BYTE_ARRAY);
+	}
+	
+	public static NbtCompound writeScales(ScaleData[] scales, NbtCompound nbt)
+	{
+		final List<Identifier> ids = new ArrayList<>();
+		final Object2IntMap<Identifier> palette = new Object2IntOpenHashMap<>();
+		palette.defaultReturnValue(-1);
+		
+		final PacketByteBuf body = new PacketByteBuf(Unpooled.buffer());
+		final PacketByteBuf values = new PacketByteBuf(Unpooled.buffer());
+		
+		int count = 0;
+		for (final ScaleData scaleData : scales)
+		{
+			if (scaleData == null)
+			{
+				continue;
+			}
+			
+			values.clear();
+			
+			if (scaleData.writePackedNbt(values, id -> getIndex(ids, palette, id)))
+			{
+				body.writeVarInt(getIndex(ids, palette, ScaleRegistries.getId(ScaleRegistries.SCALE_TYPES, scaleData.getScaleType())));
+				body.writeVarInt(values.readableBytes());
+				body.writeBytes(values);
+				count++;
+			}
+		}
+		
+		if (count == 0)
+		{
+			return nbt;
+		}
+		
+		final PacketByteBuf buffer = new PacketByteBuf(Unpooled.buffer(body.readableBytes() + ids.size() * 16 + 8));
+		buffer.writeByte(VERSION);
+		buffer.writeVarInt(ids.size());
+		
+		for (final Identifier id : ids)
+		{
+			buffer.writeString(id.toString());
+		}
+		
+		buffer.writeVarInt(count);
+		buffer.writeBytes(body);
+		
+		final byte[] bytes = new byte[buffer.readableBytes()];
+		buffer.readBytes(bytes);
+		
+		nbt.putByteArray(KEY, bytes);
+		
+		return nbt;
+	}
+	
+	/**
+	 * Reads packed scale data into an entity. Scale types that are not registered are skipped.
+	 */
+	public static void readScales(PehkuiEntityExtensions entity, byte[] bytes)
+	{
+		final PacketByteBuf buffer = new PacketByteBuf(Unpooled.wrappedBuffer(bytes));
+		
+		try
+		{
+			final byte version = buffer.readByte();
+			
+			if (version != VERSION)
+			{
+				Pehkui.LOGGER.warn("Skipping scale data in unknown packed format version {}.", version);
+				return;
+			}
+			
+			final Identifier[] ids = new Identifier[buffer.readVarInt()];
+			
+			for (int i = 0; i < ids.length; i++)
+			{
+				ids[i] = Identifier.tryParse(buffer.readString(32767));
+			}
+			
+			ScaleType type;
+			int length;
+			for (int i = buffer.readVarInt(); i > 0; i--)
+			{
+				type = ScaleRegistries.getEntry(ScaleRegistries.SCALE_TYPES, getId(ids, buffer.readVarInt()));
+				length = buffer.readVarInt();
+				
+				if (type == null)
+				{
+					buffer.skipBytes(length);
+					continue;
+				}
+				
+				entity.pehkui_getScaleData(type).readPackedNbt(new PacketByteBuf(buffer.readSlice(length)), index -> getId(ids, index));
+			}
+		}
+		catch (IndexOutOfBoundsException e)
+		{
+			Pehkui.LOGGER.warn("Skipping the rest of truncated packed scale data.");
+		}
+	}
+	
+	private static int getIndex(List<Identifier> ids, Object2IntMap<Identifier> palette, Identifier id)
+	{
+		int index = palette.getInt(id);
+		
+		if (index == -1)
+		{
+			index = ids.size();
+			ids.add(id);
+			palette.put(id, index);
+		}
+		
+		return index;
+	}
+	
+	private static @Nullable Identifier getId(Identifier[] ids, int index)
+	{
+		return index >= 0 && index < ids.length ? ids[index] : null;
+	}
+}
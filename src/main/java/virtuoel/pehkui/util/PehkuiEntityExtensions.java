@@ -2,7 +2,10 @@ package virtuoel.pehkui.util;
 
 import java.util.Map;
 
+import org.jetbrains.annotations.Nullable;
+
 import net.minecraft.nbt.NbtCompound;
+import net.minecraft.network.Packet;
 import virtuoel.pehkui.api.ScaleData;
 import virtuoel.pehkui.api.ScaleType;
 
@@ -10,14 +13,67 @@ public interface PehkuiEntityExtensions
 {
 	ScaleData pehkui_constructScaleData(ScaleType type);
 	
+	/**
+	 * Gets scale data of the given type, creating it if needed.
+	 * <p>Lookups are lock-free and may be performed from any thread, and creation is serialized per entity.
+	 * Modifying the returned scale data is confined to the thread that ticks the entity.
+	 */
 	ScaleData pehkui_getScaleData(ScaleType type);
 	
+	/**
+	 * Looks up scale data of the given type without creating it.
+	 * Types that have never been written to are not materialized and should be treated as holding the default values of the type.
+	 * 
+	 * @return Existing scale data, or null if none has been created yet
+	 */
+	@Nullable
+	ScaleData pehkui_getScaleDataIfPresent(ScaleType type);
+	
+	/**
+	 * @return Array of materialized scale data indexed by {@link ScaleType#getIndex()}, with null entries for types not created yet. Must not be modified.
+	 */
+	ScaleData[] pehkui_getScaleDataArray();
+	
+	/**
+	 * Replaces or removes the scale data of the given type. Removed types are treated as holding the default values of the type again.
+	 * 
+	 * @return Previous scale data, or null if none had been created
+	 */
+	@Nullable
+	ScaleData pehkui_setScaleData(ScaleType type, @Nullable ScaleData scaleData);
+	
+	/**
+	 * @return Live view of the materialized scale data of this entity, which writes through to it
+	 */
 	Map<ScaleType, ScaleData> pehkui_getScales();
 	
 	boolean pehkui_shouldSyncScales();
 	
 	void pehkui_setShouldSyncScales(boolean sync);
 	
+	/**
+	 * @return Scale packet last built for players that start tracking this entity, or null if there was nothing to send
+	 */
+	@Nullable
+	Packet<?> pehkui_getTrackingScalePacket();
+	
+	/**
+	 * @return World time that the tracking scale packet was built at, or {@link Long#MIN_VALUE} if scales changed since
+	 */
+	long pehkui_getTrackingScalePacketTime();
+	
+	void pehkui_setTrackingScalePacket(@Nullable Packet<?> packet, long time);
+	
+	/**
+	 * Checks whether any scale data of this entity may hold non-default values, without looking at the scale data.
+	 * Set whenever scale data of this entity changes, and only cleared once saving finds every scale at its defaults.
+	 * 
+	 * @return false if all scales of this entity are known to be default
+	 */
+	boolean pehkui_hasNonDefaultScales();
+	
+	void pehkui_setHasNonDefaultScales(boolean nonDefault);
+	
 	boolean pehkui_shouldIgnoreScaleNbt();
 	
 	void pehkui_setShouldIgnoreScaleNbt(boolean ignore);
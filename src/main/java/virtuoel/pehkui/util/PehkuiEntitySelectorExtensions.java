@@ -0,0 +1,15 @@
+package virtuoel.pehkui.util;
+
+import org.jetbrains.annotations.Nullable;
+
+import net.minecraft.predicate.NumberRange;
+import virtuoel.pehkui.api.ScaleType;
+
+public interface PehkuiEntitySelectorExtensions
+{
+	@Nullable ScaleType pehkui_getIndexedScaleType();
+	
+	NumberRange.FloatRange pehkui_getIndexedScaleRange();
+	
+	void pehkui_setIndexedScaleRange(final ScaleType scaleType, final NumberRange.FloatRange scaleRange);
+}
@@ -0,0 +1,14 @@
+package virtuoel.pehkui.util;
+
+public interface PehkuiTrackedScaleExtensions
+{
+	/**
+	 * @return Whether this entity syncs its base scale as tracked data, as set up by {@link TrackedScaleSyncUtils}
+	 */
+	boolean pehkui_hasTrackedScale();
+	
+	/**
+	 * Updates the tracked data holding the target scale and scale tick delay of the base scale type. Does nothing if this entity doesn't have tracked scales.
+	 */
+	void pehkui_setTrackedScale(float targetScale, int trackedScaleTickDelay);
+}
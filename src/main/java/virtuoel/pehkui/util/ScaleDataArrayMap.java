@@ -0,0 +1,134 @@
+package virtuoel.pehkui.util;
+
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.Set;
+
+import virtuoel.pehkui.api.ScaleData;
+import virtuoel.pehkui.api.ScaleType;
+
+/**
+ * Live map view of the scale data of an entity, backed by its array indexed by {@link ScaleType#getIndex()}.
+ * Reads always see the current array, and writes go through {@link PehkuiEntityExtensions#pehkui_setScaleData(ScaleType, ScaleData)}.
+ */
+public class ScaleDataArrayMap extends AbstractMap<ScaleType, ScaleData>
+{
+	private final PehkuiEntityExtensions entity;
+	
+	public ScaleDataArrayMap(PehkuiEntityExtensions entity)
+	{
+		this.entity = entity;
+	}
+	
+	@Override
+	public ScaleData get(Object key)
+	{
+		return key instanceof ScaleType ? entity.pehkui_getScaleDataIfPresent((ScaleType) key) : null;
+	}
+	
+	@Override
+	public boolean containsKey(Object key)
+	{
+		return get(key) != null;
+	}
+	
+	/**
+	 * @throws NullPointerException if the scale data is null, since missing scale data is represented by absent keys
+	 */
+	@Override
+	public ScaleData put(ScaleType key, ScaleData value)
+	{
+		if (value == null)
+		{
+			throw new NullPointerException();
+		}
+		
+		return entity.pehkui_setScaleData(key, value);
+	}
+	
+	@Override
+	public ScaleData remove(Object key)
+	{
+		return key instanceof ScaleType ? entity.pehkui_setScaleData((ScaleType) key, null) : null;
+	}
+	
+	@Override
+	public Set<Entry<ScaleType, ScaleData>> entrySet()
+	{
+		return new AbstractSet<Entry<ScaleType, ScaleData>>()
+		{
+			@Override
+			public Iterator<Entry<ScaleType, ScaleData>> iterator()
+			{
+				final ScaleData[] scales = entity.pehkui_getScaleDataArray();
+				
+				return new Iterator<Entry<ScaleType, ScaleData>>()
+				{
+					private int next = advance(0);
+					private ScaleType last = null;
+					
+					private int advance(int index)
+					{
+						while (index < scales.length && scales[index] == null)
+						{
+							index++;
+						}
+						
+						return index;
+					}
+					
+					@Override
+					public boolean hasNext()
+					{
+						return next < scales.length;
+					}
+					
+					@Override
+					public Entry<ScaleType, ScaleData> next()
+					{
+						if (!hasNext())
+						{
+							throw new NoSuchElementException();
+						}
+						
+						final ScaleData data = scales[next];
+						next = advance(next + 1);
+						last = data.getScaleType();
+						
+						return new AbstractMap.SimpleImmutableEntry<>(last, data);
+					}
+					
+					@Override
+					public void remove()
+					{
+						if (last == null)
+						{
+							throw new IllegalStateException();
+						}
+						
+						entity.pehkui_setScaleData(last, null);
+						last = null;
+					}
+				};
+			}
+			
+			@Override
+			public int size()
+			{
+				int size = 0;
+				
+				for (final ScaleData data : entity.pehkui_getScaleDataArray())
+				{
+					if (data != null)
+					{
+						size++;
+					}
+				}
+				
+				return size;
+			}
+		};
+	}
+}
@@ -0,0 +1,258 @@
+package virtuoel.pehkui.util;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.WeakHashMap;
+
+import org.jetbrains.annotations.Nullable;
+
+import it.unimi.dsi.fastutil.floats.Float2ObjectAVLTreeMap;
+import it.unimi.dsi.fastutil.floats.Float2ObjectSortedMap;
+import it.unimi.dsi.fastutil.objects.Reference2FloatMap;
+import it.unimi.dsi.fastutil.objects.Reference2FloatOpenHashMap;
+import it.unimi.dsi.fastutil.objects.Reference2ObjectOpenHashMap;
+import it.unimi.dsi.fastutil.objects.ReferenceOpenHashSet;
+import net.minecraft.entity.Entity;
+import net.minecraft.predicate.NumberRange;
+import net.minecraft.server.MinecraftServer;
+import net.minecraft.server.world.ServerWorld;
+import net.minecraft.world.World;
+import virtuoel.pehkui.api.PehkuiConfig;
+import virtuoel.pehkui.api.ScaleData;
+import virtuoel.pehkui.api.ScaleType;
+
+/**
+ * Per-world index of entities sorted by base scale, so that entity selectors with a {@code pehkui:scale} range only look at matching entities.
+ * <p>Only entities with a base scale other than the default of a type are indexed for that type. Entities in a transition are kept apart
+ * and are always candidates, since time-based transitions change their base scale without updating the index.
+ * Candidates still have to pass the full selector predicate, so an outdated entry can only cost an extra check.
+ * <p>Enabled by {@link PehkuiConfig.Common#scaleSelectorIndex} when a server starts. Index updates only happen on the server thread.
+ */
+public class ScaleIndexUtils
+{
+	private static boolean available = false;
+	private static boolean active = false;
+	
+	private static final Map<World, WorldIndex> INDICES = new WeakHashMap<>();
+	
+	/**
+	 * Makes the index available. Should only be called if entity load and unload events will be passed to
+	 * {@link #onEntityLoad(Entity, ServerWorld)} and {@link #onEntityUnload(Entity, ServerWorld)}.
+	 */
+	public static void enable()
+	{
+		available = true;
+	}
+	
+	public static void onServerStarting(MinecraftServer server)
+	{
+		INDICES.clear();
+		active = available && PehkuiConfig.COMMON.scaleSelectorIndex.get();
+	}
+	
+	public static void onServerStopped(MinecraftServer server)
+	{
+		INDICES.clear();
+		active = false;
+	}
+	
+	public static void onEntityLoad(Entity entity, ServerWorld world)
+	{
+		if (!active || !((PehkuiEntityExtensions) entity).pehkui_hasNonDefaultScales())
+		{
+			return;
+		}
+		
+		for (final ScaleData scaleData : ((PehkuiEntityExtensions) entity).pehkui_getScaleDataArray())
+		{
+			if (scaleData != null)
+			{
+				update(world, entity, scaleData);
+			}
+		}
+	}
+	
+	public static void onEntityUnload(Entity entity, ServerWorld world)
+	{
+		if (!active)
+		{
+			return;
+		}
+		
+		final WorldIndex index = INDICES.get(world);
+		
+		if (index != null)
+		{
+			index.remove(entity);
+		}
+	}
+	
+	/**
+	 * Called when values of scale data change, to update the index of its entity's world.
+	 */
+	public static void onScaleChanged(ScaleData scaleData)
+	{
+		if (!active)
+		{
+			return;
+		}
+		
+		final Entity entity = scaleData.getEntity();
+		final World world = entity == null ? null : entity.world;
+		
+		if (world instanceof ServerWorld && world.getServer().isOnThread() && world.getEntityById(entity.getId()) == entity)
+		{
+			update(world, entity, scaleData);
+		}
+	}
+	
+	private static void update(World world, Entity entity, ScaleData scaleData)
+	{
+		WorldIndex index = INDICES.get(world);
+		
+		if (index == null)
+		{
+			index = new WorldIndex();
+			INDICES.put(world, index);
+		}
+		
+		index.update(entity, scaleData);
+	}
+	
+	/**
+	 * Gets the entities of a world that may have a base scale of the given type within the given range.
+	 *
+	 * @return Candidate entities, or null if the index is not active or the range includes the default scale, in which case all entities have to be checked
+	 */
+	public static @Nullable Collection<Entity> getCandidates(ServerWorld world, ScaleType type, NumberRange.FloatRange range)
+	{
+		if (!active || CommandUtils.testFloatRange(range, type.getDefaultBaseScale()))
+		{
+			return null;
+		}
+		
+		final WorldIndex index = INDICES.get(world);
+		
+		if (index == null)
+		{
+			return Collections.emptyList();
+		}
+		
+		final TypeIndex typeIndex = index.types.get(type);
+		
+		return typeIndex == null ? Collections.emptyList() : typeIndex.getCandidates(range.getMin(), range.getMax());
+	}
+	
+	private static final class WorldIndex
+	{
+		private final Map<ScaleType, TypeIndex> types = new Reference2ObjectOpenHashMap<>();
+		
+		private void update(Entity entity, ScaleData scaleData)
+		{
+			final ScaleType type = scaleData.getScaleType();
+			TypeIndex index = this.types.get(type);
+			
+			if (index == null)
+			{
+				index = new TypeIndex();
+				this.types.put(type, index);
+			}
+			
+			index.update(entity, scaleData);
+		}
+		
+		private void remove(Entity entity)
+		{
+			for (final TypeIndex index : this.types.values())
+			{
+				index.remove(entity);
+			}
+		}
+	}
+	
+	private static final class TypeIndex
+	{
+		private final Float2ObjectSortedMap<Set<Entity>> byScale = new Float2ObjectAVLTreeMap<>();
+		private final Reference2FloatMap<Entity> scales = new Reference2FloatOpenHashMap<>();
+		private final Set<Entity> transitioning = new ReferenceOpenHashSet<>();
+		
+		private void update(Entity entity, ScaleData scaleData)
+		{
+			remove(entity);
+			
+			final float scale = scaleData.getBaseScale();
+			
+			if (scale != scaleData.getTargetScale())
+			{
+				this.transitioning.add(entity);
+			}
+			else if (scale != scaleData.getScaleType().getDefaultBaseScale())
+			{
+				Set<Entity> entities = this.byScale.get(scale);
+				
+				if (entities == null)
+				{
+					entities = new ReferenceOpenHashSet<>();
+					this.byScale.put(scale, entities);
+				}
+				
+				entities.add(entity);
+				this.scales.put(entity, scale);
+			}
+		}
+		
+		private void remove(Entity entity)
+		{
+			if (this.transitioning.remove(entity) || !this.scales.containsKey(entity))
+			{
+				return;
+			}
+			
+			final float scale = this.scales.removeFloat(entity);
+			final Set<Entity> entities = this.byScale.get(scale);
+			
+			if (entities != null && entities.remove(entity) && entities.isEmpty())
+			{
+				this.byScale.remove(scale);
+			}
+		}
+		
+		/**
+		 * Range bounds are {@link Number}s, since {@link NumberRange.FloatRange} holds floats before 1.17 and doubles after.
+		 */
+		private Collection<Entity> getCandidates(@Nullable Number minBound, @Nullable Number maxBound)
+		{
+			final List<Entity> candidates = new ArrayList<>(this.transitioning);
+			
+			final float min = minBound == null ? Float.NEGATIVE_INFINITY : minBound.floatValue();
+			final float max = maxBound == null ? Float.POSITIVE_INFINITY : maxBound.floatValue();
+			
+			if (min > max)
+			{
+				return candidates;
+			}
+			
+			final Float2ObjectSortedMap<Set<Entity>> matching;
+			
+			if (minBound == null)
+			{
+				matching = maxBound == null ? this.byScale : this.byScale.headMap(Math.nextUp(max));
+			}
+			else
+			{
+				matching = maxBound == null ? this.byScale.tailMap(min) : this.byScale.subMap(min, Math.nextUp(max));
+			}
+			
+			for (final Set<Entity> entities : matching.values())
+			{
+				candidates.addAll(entities);
+			}
+			
+			return candidates;
+		}
+	}
+}
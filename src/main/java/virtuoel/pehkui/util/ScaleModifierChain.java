@@ -0,0 +1,486 @@
+package virtuoel.pehkui.util;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Set;
+import java.util.function.DoubleBinaryOperator;
+
+import org.jetbrains.annotations.Nullable;
+
+import com.google.common.collect.Interner;
+import com.google.common.collect.Interners;
+
+import it.unimi.dsi.fastutil.objects.ObjectArraySet;
+import net.minecraft.entity.Entity;
+import virtuoel.pehkui.api.ScaleData;
+import virtuoel.pehkui.api.ScaleModifier;
+import virtuoel.pehkui.api.ScaleType;
+import virtuoel.pehkui.api.TypedScaleModifier;
+
+/**
+ * Immutable, sorted sequence of scale modifiers.
+ * Chains are interned, so every scale data holding the same set of modifiers shares a single instance
+ * and chains can be compared by identity.
+ * Interning is weak, so chains no longer held anywhere can be collected.
+ */
+public final class ScaleModifierChain implements Iterable<ScaleModifier>
+{
+	private static final Interner<ScaleModifierChain> INTERNER = Interners.newWeakInterner();
+	
+	public static final ScaleModifierChain EMPTY = intern(new ScaleModifier[0]);
+	
+	private final ScaleModifier[] modifiers;
+	private final List<ScaleModifier> list;
+	private final int hash;
+	private volatile Difference difference = null;
+	private volatile ScaleType[] dependencies = null;
+	private boolean tracked;
+	private volatile Compiled compiled = null;
+	
+	private ScaleModifierChain(ScaleModifier[] modifiers)
+	{
+		this.modifiers = modifiers;
+		this.list = Collections.unmodifiableList(Arrays.asList(modifiers));
+		this.hash = Arrays.hashCode(modifiers);
+	}
+	
+	public static ScaleModifierChain of(Collection<? extends ScaleModifier> modifiers)
+	{
+		if (modifiers.isEmpty())
+		{
+			return EMPTY;
+		}
+		
+		final ScaleModifier[] sorted = modifiers.toArray(new ScaleModifier[0]);
+		Arrays.sort(sorted);
+		
+		int size = 0;
+		for (int i = 0; i < sorted.length; i++)
+		{
+			if (size == 0 || sorted[size - 1].compareTo(sorted[i]) != 0)
+			{
+				sorted[size++] = sorted[i];
+			}
+		}
+		
+		return intern(size == sorted.length ? sorted : Arrays.copyOf(sorted, size));
+	}
+	
+	private static ScaleModifierChain intern(ScaleModifier[] modifiers)
+	{
+		return INTERNER.intern(new ScaleModifierChain(modifiers));
+	}
+	
+	public int size()
+	{
+		return modifiers.length;
+	}
+	
+	public boolean isEmpty()
+	{
+		return modifiers.length == 0;
+	}
+	
+	public ScaleModifier get(int index)
+	{
+		return modifiers[index];
+	}
+	
+	public boolean contains(Object modifier)
+	{
+		return indexOf(modifier) != -1;
+	}
+	
+	private int indexOf(Object modifier)
+	{
+		for (int i = 0; i < modifiers.length; i++)
+		{
+			if (modifiers[i] == modifier)
+			{
+				return i;
+			}
+		}
+		
+		return -1;
+	}
+	
+	/**
+	 * @return Chain with the given modifier added, or this chain if it already contains it
+	 */
+	public ScaleModifierChain with(ScaleModifier modifier)
+	{
+		if (contains(modifier))
+		{
+			return this;
+		}
+		
+		int index = 0;
+		while (index < modifiers.length && modifiers[index].compareTo(modifier) < 0)
+		{
+			index++;
+		}
+		
+		final ScaleModifier[] added = new ScaleModifier[modifiers.length + 1];
+		System.arraycopy(modifiers, 0, added, 0, index);
+		added[index] = modifier;
+		System.arraycopy(modifiers, index, added, index + 1, modifiers.length - index);
+		
+		return intern(added);
+	}
+	
+	/**
+	 * @return Chain with the given modifier removed, or this chain if it does not contain it
+	 */
+	public ScaleModifierChain without(Object modifier)
+	{
+		final int index = indexOf(modifier);
+		
+		if (index == -1)
+		{
+			return this;
+		}
+		
+		final ScaleModifier[] removed = new ScaleModifier[modifiers.length - 1];
+		System.arraycopy(modifiers, 0, removed, 0, index);
+		System.arraycopy(modifiers, index + 1, removed, index, removed.length - index);
+		
+		return intern(removed);
+	}
+	
+	/**
+	 * Gets the modifiers of this chain that are not part of the given base chain.
+	 * The result for the most recently used base chain is cached.
+	 *
+	 * @param base Chain to compare against, usually the default modifiers of a scale type
+	 * @return Interned chain of differing modifiers
+	 */
+	public ScaleModifierChain differenceFrom(ScaleModifierChain base)
+	{
+		if (base == this)
+		{
+			return EMPTY;
+		}
+		
+		final Difference cached = this.difference;
+		
+		if (cached != null && cached.base == base)
+		{
+			return cached.result;
+		}
+		
+		final ScaleModifier[] differing = new ScaleModifier[modifiers.length];
+		
+		int size = 0;
+		for (final ScaleModifier modifier : modifiers)
+		{
+			if (!base.contains(modifier))
+			{
+				differing[size++] = modifier;
+			}
+		}
+		
+		final ScaleModifierChain result = size == 0 ? EMPTY : size == modifiers.length ? this : intern(Arrays.copyOf(differing, size));
+		
+		this.difference = new Difference(base, result);
+		
+		return result;
+	}
+	
+	/**
+	 * @return Scale types read by the {@link TypedScaleModifier}s of this chain
+	 */
+	public ScaleType[] getDependencies()
+	{
+		ScaleType[] dependencies = this.dependencies;
+		
+		if (dependencies == null)
+		{
+			final Set<ScaleType> types = new ObjectArraySet<>();
+			boolean tracked = true;
+			
+			for (final ScaleModifier modifier : modifiers)
+			{
+				if (modifier.getClass() == TypedScaleModifier.class)
+				{
+					types.add(((TypedScaleModifier) modifier).getType());
+				}
+				else if (modifier.getClass() == ClampingScaleModifier.class)
+				{
+					if (!((ClampingScaleModifier) modifier).isConfigBacked())
+					{
+						tracked = false;
+					}
+				}
+				else if (modifier.getClass() != ScaleModifier.class)
+				{
+					tracked = false;
+				}
+			}
+			
+			this.tracked = tracked;
+			this.dependencies = dependencies = types.toArray(new ScaleType[0]);
+		}
+		
+		return dependencies;
+	}
+	
+	public boolean dependsOn(ScaleType type)
+	{
+		for (final ScaleType dependency : getDependencies())
+		{
+			if (dependency == type)
+			{
+				return true;
+			}
+		}
+		
+		return false;
+	}
+	
+	/**
+	 * Checks whether every modifier of this chain only reads config values and the scales of its {@link #getDependencies()},
+	 * so that results computed from it can be cached until one of those changes.
+	 * Clamps only count if Pehkui created them from its config, since other clamps may have bounds that change at any time.
+	 * 
+	 * @return true if all modifiers have known dependencies
+	 */
+	public boolean isTracked()
+	{
+		getDependencies();
+		
+		return tracked;
+	}
+	
+	/**
+	 * Applies the modifiers of this chain to a scale, using a compiled form if all modifiers are built-in types.
+	 * 
+	 * @return Modified scale
+	 */
+	public float modifyScale(ScaleData scaleData, float value, float delta)
+	{
+		final Compiled compiled = getCompiled();
+		
+		if (compiled != null)
+		{
+			return compiled.modifyScale(scaleData.getEntity(), scaleData.getScaleType(), value, delta);
+		}
+		
+		for (final ScaleModifier modifier : modifiers)
+		{
+			value = modifier.modifyScale(scaleData, value, delta);
+		}
+		
+		return value;
+	}
+	
+	/**
+	 * Previous scale variant of {@link #modifyScale(ScaleData, float, float)}.
+	 * 
+	 * @return Modified previous scale
+	 */
+	public float modifyPrevScale(ScaleData scaleData, float value)
+	{
+		final Compiled compiled = getCompiled();
+		
+		if (compiled != null)
+		{
+			return compiled.modifyPrevScale(scaleData.getEntity(), scaleData.getScaleType(), value);
+		}
+		
+		for (final ScaleModifier modifier : modifiers)
+		{
+			value = modifier.modifyPrevScale(scaleData, value);
+		}
+		
+		return value;
+	}
+	
+	/**
+	 * Gets the compiled form of this chain, which only exists if every modifier is a plain modifier,
+	 * a clamping modifier, or a typed modifier that multiplies or divides by the typed scale.
+	 * Compiled chains evaluate directly with float arithmetic on behalf of any entity.
+	 * 
+	 * @return Compiled chain, or null if this chain contains other modifiers
+	 */
+	@Nullable
+	Compiled getCompiled()
+	{
+		Compiled compiled = this.compiled;
+		
+		if (compiled == null)
+		{
+			compiled = Compiled.compile(modifiers);
+			this.compiled = compiled;
+		}
+		
+		return compiled == Compiled.NONE ? null : compiled;
+	}
+	
+	/**
+	 * @return Unmodifiable list view of this chain
+	 */
+	public List<ScaleModifier> asList()
+	{
+		return list;
+	}
+	
+	@Override
+	public Iterator<ScaleModifier> iterator()
+	{
+		return list.iterator();
+	}
+	
+	/**
+	 * Only used for interning. Interned chains are equal exactly if they are the same instance.
+	 */
+	@Override
+	public boolean equals(Object obj)
+	{
+		return obj == this || (obj instanceof ScaleModifierChain && Arrays.equals(modifiers, ((ScaleModifierChain) obj).modifiers));
+	}
+	
+	@Override
+	public int hashCode()
+	{
+		return hash;
+	}
+	
+	static final class Compiled
+	{
+		private static final Compiled NONE = new Compiled(new byte[0], new ScaleType[0], new ClampingScaleModifier[0]);
+		
+		private static final byte MULTIPLY = 0;
+		private static final byte DIVIDE = 1;
+		private static final byte CLAMP = 2;
+		
+		private final byte[] operations;
+		private final ScaleType[] types;
+		private final ClampingScaleModifier[] clamps;
+		
+		private Compiled(byte[] operations, ScaleType[] types, ClampingScaleModifier[] clamps)
+		{
+			this.operations = operations;
+			this.types = types;
+			this.clamps = clamps;
+		}
+		
+		private static Compiled compile(ScaleModifier[] modifiers)
+		{
+			final byte[] operations = new byte[modifiers.length];
+			final ScaleType[] types = new ScaleType[modifiers.length];
+			final ClampingScaleModifier[] clamps = new ClampingScaleModifier[modifiers.length];
+			
+			int size = 0;
+			Class<?> c;
+			for (final ScaleModifier modifier : modifiers)
+			{
+				c = modifier.getClass();
+				
+				if (c == TypedScaleModifier.class)
+				{
+					final TypedScaleModifier typed = (TypedScaleModifier) modifier;
+					final DoubleBinaryOperator operation = typed.getOperation();
+					
+					if (operation == TypedScaleModifier.MULTIPLY)
+					{
+						operations[size] = MULTIPLY;
+					}
+					else if (operation == TypedScaleModifier.DIVIDE)
+					{
+						operations[size] = DIVIDE;
+					}
+					else
+					{
+						return NONE;
+					}
+					
+					types[size++] = typed.getType();
+				}
+				else if (c == ClampingScaleModifier.class)
+				{
+					operations[size] = CLAMP;
+					clamps[size++] = (ClampingScaleModifier) modifier;
+				}
+				else if (c != ScaleModifier.class)
+				{
+					return NONE;
+				}
+			}
+			
+			return new Compiled(Arrays.copyOf(operations, size), Arrays.copyOf(types, size), Arrays.copyOf(clamps, size));
+		}
+		
+		/**
+		 * Float arithmetic here gives the same results as the double operators of {@link TypedScaleModifier},
+		 * since float products and quotients computed in double precision round back to the same float.
+		 */
+		float modifyScale(@Nullable Entity entity, ScaleType ownType, float value, float delta)
+		{
+			for (int i = 0; i < operations.length; i++)
+			{
+				switch (operations[i])
+				{
+					case MULTIPLY:
+						if (types[i] != ownType)
+						{
+							value *= ScaleUtils.getTypedScale(entity, types[i], delta);
+						}
+						break;
+					case DIVIDE:
+						if (types[i] != ownType)
+						{
+							value /= ScaleUtils.getTypedScale(entity, types[i], delta);
+						}
+						break;
+					default:
+						value = clamps[i].clamp(value);
+						break;
+				}
+			}
+			
+			return value;
+		}
+		
+		float modifyPrevScale(@Nullable Entity entity, ScaleType ownType, float value)
+		{
+			for (int i = 0; i < operations.length; i++)
+			{
+				switch (operations[i])
+				{
+					case MULTIPLY:
+						if (types[i] != ownType)
+						{
+							value *= ScaleUtils.getTypedPrevScale(entity, types[i]);
+						}
+						break;
+					case DIVIDE:
+						if (types[i] != ownType)
+						{
+							value /= ScaleUtils.getTypedPrevScale(entity, types[i]);
+						}
+						break;
+					default:
+						value = clamps[i].clamp(value);
+						break;
+				}
+			}
+			
+			return value;
+		}
+	}
+	
+	private static final class Difference
+	{
+		private final ScaleModifierChain base;
+		private final ScaleModifierChain result;
+		
+		private Difference(ScaleModifierChain base, ScaleModifierChain result)
+		{
+			this.base = base;
+			this.result = result;
+		}
+	}
+}
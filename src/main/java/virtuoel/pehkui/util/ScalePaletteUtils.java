@@ -0,0 +1,188 @@
+package virtuoel.pehkui.util;
+
+import java.util.Map;
+
+import org.jetbrains.annotations.Nullable;
+
+import com.google.common.collect.BiMap;
+
+import io.netty.buffer.Unpooled;
+import net.minecraft.network.PacketByteBuf;
+import net.minecraft.network.packet.s2c.play.CustomPayloadS2CPacket;
+import net.minecraft.server.MinecraftServer;
+import net.minecraft.util.Identifier;
+import virtuoel.pehkui.Pehkui;
+import virtuoel.pehkui.api.ScaleRegistries;
+import virtuoel.pehkui.api.ScaleRegistrySnapshot;
+
+/**
+ * Maps scale registry entries to small integers for the scale sync protocol.
+ * <p>The server sends its palette once when a player connects. Scale packets then write entries as a var int of their palette index plus one,
+ * or as a zero followed by the full identifier for entries that are not part of the palette, such as ones registered after it was created.
+ * Indices that the receiving side can't resolve are read as null, same as unknown identifiers.
+ * <p>The palette packet starts with {@link #PROTOCOL_VERSION}, so that clients can refuse servers whose scale packets they can't read.
+ * The palette itself is rebuilt whenever a server starts, so it always matches the registries of the running server.
+ */
+public class ScalePaletteUtils
+{
+	/**
+	 * Version of the scale sync protocol. Should be increased whenever the format of scale packets changes.
+	 */
+	public static final int PROTOCOL_VERSION = 1;
+	
+	@SuppressWarnings("unchecked")
+	private static final BiMap<Identifier, ?>[] REGISTRIES = new BiMap[] {
+		ScaleRegistries.SCALE_TYPES,
+		ScaleRegistries.SCALE_MODIFIERS,
+		ScaleRegistries.SCALE_EASINGS
+	};
+	
+	private static volatile ScaleRegistrySnapshot<?>[] serverPalette = null;
+	private static volatile Identifier[][] receivedPalette = null;
+	
+	private static ScaleRegistrySnapshot<?>[] getServerPalette()
+	{
+		final ScaleRegistrySnapshot<?>[] palette = serverPalette;
+		
+		return palette != null ? palette : createServerPalette();
+	}
+	
+	private static synchronized ScaleRegistrySnapshot<?>[] createServerPalette()
+	{
+		if (serverPalette == null)
+		{
+			final ScaleRegistrySnapshot<?>[] palette = new ScaleRegistrySnapshot<?>[REGISTRIES.length];
+			
+			for (int i = 0; i < REGISTRIES.length; i++)
+			{
+				palette[i] = ScaleRegistries.getSnapshot(REGISTRIES[i]);
+			}
+			
+			serverPalette = palette;
+		}
+		
+		return serverPalette;
+	}
+	
+	public static void onServerStarting(MinecraftServer server)
+	{
+		serverPalette = null;
+		createServerPalette();
+	}
+	
+	public static void onServerStopped(MinecraftServer server)
+	{
+		serverPalette = null;
+	}
+	
+	private static int getRegistryIndex(Map<Identifier, ?> registry)
+	{
+		for (int i = 0; i < REGISTRIES.length; i++)
+		{
+			if (REGISTRIES[i] == registry)
+			{
+				return i;
+			}
+		}
+		
+		throw new IllegalArgumentException("Unknown scale registry");
+	}
+	
+	public static CustomPayloadS2CPacket createPalettePacket()
+	{
+		final PacketByteBuf buffer = new PacketByteBuf(Unpooled.buffer());
+		
+		buffer.writeVarInt(PROTOCOL_VERSION);
+		
+		for (final ScaleRegistrySnapshot<?> snapshot : getServerPalette())
+		{
+			final int size = snapshot.size();
+			
+			buffer.writeVarInt(size);
+			
+			for (int i = 0; i < size; i++)
+			{
+				buffer.writeIdentifier(snapshot.getId(i));
+			}
+		}
+		
+		return new CustomPayloadS2CPacket(Pehkui.SCALE_PALETTE_PACKET, buffer);
+	}
+	
+	/**
+	 * Reads a palette sent by the server. Should be called on the network thread, so that it is applied before any following scale packets are read.
+	 * 
+	 * @return Protocol version of the server. The palette is only read if it equals {@link #PROTOCOL_VERSION}
+	 */
+	public static int readPalette(PacketByteBuf buffer)
+	{
+		final int version = buffer.readVarInt();
+		
+		if (version != PROTOCOL_VERSION)
+		{
+			receivedPalette = null;
+			return version;
+		}
+		
+		final Identifier[][] palette = new Identifier[REGISTRIES.length][];
+		
+		for (int r = 0; r < REGISTRIES.length; r++)
+		{
+			final Identifier[] ids = new Identifier[buffer.readVarInt()];
+			
+			for (int i = 0; i < ids.length; i++)
+			{
+				ids[i] = buffer.readIdentifier();
+			}
+			
+			palette[r] = ids;
+		}
+		
+		receivedPalette = palette;
+		
+		return version;
+	}
+	
+	public static void resetReceivedPalette()
+	{
+		receivedPalette = null;
+	}
+	
+	public static <E> void writeId(PacketByteBuf buffer, BiMap<Identifier, E> registry, E entry)
+	{
+		@SuppressWarnings("unchecked")
+		final ScaleRegistrySnapshot<E> palette = (ScaleRegistrySnapshot<E>) getServerPalette()[getRegistryIndex(registry)];
+		final int index = palette.indexOf(entry);
+		
+		if (index != -1)
+		{
+			buffer.writeVarInt(index + 1);
+		}
+		else
+		{
+			buffer.writeVarInt(0);
+			buffer.writeIdentifier(ScaleRegistries.getId(registry, entry));
+		}
+	}
+	
+	public static @Nullable Identifier readId(PacketByteBuf buffer, BiMap<Identifier, ?> registry)
+	{
+		final int index = buffer.readVarInt() - 1;
+		
+		if (index == -1)
+		{
+			return buffer.readIdentifier();
+		}
+		
+		final Identifier[][] palette = receivedPalette;
+		
+		if (palette == null)
+		{
+			return null;
+		}
+		
+		final Identifier[] ids = palette[getRegistryIndex(registry)];
+		
+		return index < ids.length ? ids[index] : null;
+	}
+}
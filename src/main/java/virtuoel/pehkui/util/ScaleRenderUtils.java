@@ -41,6 +41,21 @@ public class ScaleRenderUtils
 		return depth;
 	}
 	
+	private static int renderFrame = 0;
+	
+	/**
+	 * Called at the start of every rendered frame. Scales computed for a partial tick are cached until the next frame.
+	 */
+	public static void onRenderFrame()
+	{
+		renderFrame++;
+	}
+	
+	public static int getRenderFrame()
+	{
+		return renderFrame;
+	}
+	
 	private static final Set<Item> loggedItems = ConcurrentHashMap.newKeySet();
 	private static ItemStack lastRenderedStack = null;
 	private static int itemRecursionDepth = 0;
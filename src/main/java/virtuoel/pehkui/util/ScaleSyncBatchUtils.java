@@ -0,0 +1,201 @@
+package virtuoel.pehkui.util;
+
+import java.util.Map;
+import java.util.Set;
+
+import io.netty.buffer.Unpooled;
+import it.unimi.dsi.fastutil.objects.Reference2ObjectLinkedOpenHashMap;
+import it.unimi.dsi.fastutil.objects.Reference2ObjectOpenHashMap;
+import it.unimi.dsi.fastutil.objects.ReferenceLinkedOpenHashSet;
+import net.fabricmc.fabric.api.networking.v1.PlayerLookup;
+import net.minecraft.entity.Entity;
+import net.minecraft.network.Packet;
+import net.minecraft.network.PacketByteBuf;
+import net.minecraft.network.packet.s2c.play.CustomPayloadS2CPacket;
+import net.minecraft.server.MinecraftServer;
+import net.minecraft.server.network.ServerPlayNetworkHandler;
+import virtuoel.pehkui.Pehkui;
+import virtuoel.pehkui.api.PehkuiConfig;
+
+/**
+ * Combines the scale packets sent to each player during a server tick into as few packets as possible.
+ * <p>Scale packets hold one block of entity scales each, so a batch is just their contents written one after another.
+ * Packets sent while batching is unavailable, or from other threads, are sent as they are.
+ * <p>Players farther than {@link PehkuiConfig.Common#reducedSyncDistance} from an entity don't get its scale updates right away.
+ * Instead, they get the latest full scales of the entity every {@link #REDUCED_SYNC_INTERVAL} ticks, until they receive them.
+ */
+public class ScaleSyncBatchUtils
+{
+	/**
+	 * Batches are sent early once they reach this size.
+	 */
+	private static final int MAX_BATCH_SIZE = 0x8000;
+	
+	public static final int REDUCED_SYNC_INTERVAL = 20;
+	
+	private static boolean enabled = false;
+	
+	private static final Map<Packet<?>, PendingPayload> PENDING_PAYLOADS = new Reference2ObjectOpenHashMap<>();
+	private static final Map<ServerPlayNetworkHandler, PacketByteBuf> BATCHES = new Reference2ObjectLinkedOpenHashMap<>();
+	private static final Map<ServerPlayNetworkHandler, Set<Entity>> DEFERRED_ENTITIES = new Reference2ObjectLinkedOpenHashMap<>();
+	
+	/**
+	 * Enables batching. Should only be called if {@link #flush(MinecraftServer)} will get called at the end of every server tick.
+	 */
+	public static void enable()
+	{
+		enabled = true;
+	}
+	
+	/**
+	 * Creates a scale packet that gets merged into the batch of each player it is sent to.
+	 * Packets created off the server thread are not registered for batching, and get sent as they are.
+	 *
+	 * @param delta Whether the packet only holds changes, which can be replaced by a later full sync for far players
+	 */
+	public static CustomPayloadS2CPacket createPacket(Entity entity, PacketByteBuf buffer, boolean delta)
+	{
+		final CustomPayloadS2CPacket packet = new CustomPayloadS2CPacket(Pehkui.SCALE_PACKET, buffer);
+		
+		final MinecraftServer server = entity.world == null ? null : entity.world.getServer();
+		
+		if (enabled && server != null && server.isOnThread())
+		{
+			PENDING_PAYLOADS.put(packet, new PendingPayload(entity, buffer, delta));
+		}
+		
+		return packet;
+	}
+	
+	/**
+	 * @return true if the packet was added to the handler's batch or deferred, and should not be sent now
+	 */
+	public static boolean batch(ServerPlayNetworkHandler handler, Packet<?> packet)
+	{
+		final MinecraftServer server = handler.player.getServer();
+		
+		if (!enabled || server == null || !server.isOnThread())
+		{
+			return false;
+		}
+		
+		final PendingPayload pending = PENDING_PAYLOADS.get(packet);
+		
+		if (pending == null)
+		{
+			return false;
+		}
+		
+		if (pending.delta && defer(handler, pending.entity))
+		{
+			return true;
+		}
+		
+		final PacketByteBuf payload = pending.buffer;
+		PacketByteBuf batch = BATCHES.get(handler);
+		
+		if (batch != null && batch.readableBytes() + payload.readableBytes() > MAX_BATCH_SIZE)
+		{
+			BATCHES.remove(handler);
+			handler.sendPacket(new CustomPayloadS2CPacket(Pehkui.SCALE_PACKET, batch));
+			batch = null;
+		}
+		
+		if (batch == null)
+		{
+			batch = new PacketByteBuf(Unpooled.buffer(Math.min(payload.readableBytes() * 4, MAX_BATCH_SIZE)));
+			BATCHES.put(handler, batch);
+		}
+		
+		batch.writeBytes(payload, payload.readerIndex(), payload.readableBytes());
+		
+		return true;
+	}
+	
+	/**
+	 * Defers updates of an entity to a far player. Once deferred, later updates are deferred as well regardless of distance,
+	 * since they only hold changes on top of the ones that player skipped.
+	 *
+	 * @return true if the update should be skipped
+	 */
+	private static boolean defer(ServerPlayNetworkHandler handler, Entity entity)
+	{
+		Set<Entity> deferred = DEFERRED_ENTITIES.get(handler);
+		
+		if (deferred != null && deferred.contains(entity))
+		{
+			return true;
+		}
+		
+		final double distance = PehkuiConfig.COMMON.reducedSyncDistance.get();
+		
+		if (distance <= 0.0D || handler.player.squaredDistanceTo(entity) <= distance * distance)
+		{
+			return false;
+		}
+		
+		if (deferred == null)
+		{
+			deferred = new ReferenceLinkedOpenHashSet<>();
+			DEFERRED_ENTITIES.put(handler, deferred);
+		}
+		
+		deferred.add(entity);
+		
+		return true;
+	}
+	
+	/**
+	 * Sends all pending batches, as well as full scales of deferred entities every {@link #REDUCED_SYNC_INTERVAL} ticks.
+	 * Deferred entities that a player stopped tracking are dropped, since they get synced again once tracking starts.
+	 * Called at the end of every server tick.
+	 */
+	public static void flush(MinecraftServer server)
+	{
+		if (!DEFERRED_ENTITIES.isEmpty() && server.getTicks() % REDUCED_SYNC_INTERVAL == 0)
+		{
+			for (final Map.Entry<ServerPlayNetworkHandler, Set<Entity>> entry : DEFERRED_ENTITIES.entrySet())
+			{
+				final ServerPlayNetworkHandler handler = entry.getKey();
+				
+				for (final Entity entity : entry.getValue())
+				{
+					if (entity.world.getEntityById(entity.getId()) == entity && PlayerLookup.tracking(entity).contains(handler.player))
+					{
+						ScaleUtils.syncScales(entity, handler::sendPacket, scaleData -> true, false);
+					}
+				}
+			}
+			
+			DEFERRED_ENTITIES.clear();
+		}
+		
+		PENDING_PAYLOADS.clear();
+		
+		if (BATCHES.isEmpty())
+		{
+			return;
+		}
+		
+		for (final Map.Entry<ServerPlayNetworkHandler, PacketByteBuf> entry : BATCHES.entrySet())
+		{
+			entry.getKey().sendPacket(new CustomPayloadS2CPacket(Pehkui.SCALE_PACKET, entry.getValue()));
+		}
+		
+		BATCHES.clear();
+	}
+	
+	private static final class PendingPayload
+	{
+		private final Entity entity;
+		private final PacketByteBuf buffer;
+		private final boolean delta;
+		
+		private PendingPayload(Entity entity, PacketByteBuf buffer, boolean delta)
+		{
+			this.entity = entity;
+			this.buffer = buffer;
+			this.delta = delta;
+		}
+	}
+}
@@ -3,35 +3,72 @@ package virtuoel.pehkui.util;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.List;
-import java.util.Map.Entry;
-import java.util.SortedSet;
 import java.util.function.Consumer;
 import java.util.function.Predicate;
 import java.util.function.Supplier;
 
+import org.jetbrains.annotations.Nullable;
+
 import io.netty.buffer.Unpooled;
 import net.minecraft.entity.Entity;
 import net.minecraft.entity.player.PlayerEntity;
 import net.minecraft.nbt.NbtCompound;
-import net.minecraft.nbt.NbtList;
-import net.minecraft.nbt.NbtOps;
 import net.minecraft.network.Packet;
 import net.minecraft.network.PacketByteBuf;
-import net.minecraft.network.packet.s2c.play.CustomPayloadS2CPacket;
-import net.minecraft.util.Identifier;
 import net.minecraft.util.math.BlockPos;
 import net.minecraft.util.math.Direction;
 import net.minecraft.util.math.MathHelper;
-import virtuoel.pehkui.Pehkui;
+import net.minecraft.world.World;
 import virtuoel.pehkui.api.PehkuiConfig;
 import virtuoel.pehkui.api.ScaleData;
 import virtuoel.pehkui.api.ScaleModifier;
 import virtuoel.pehkui.api.ScaleRegistries;
+import virtuoel.pehkui.api.ScaleRegistrySnapshot;
 import virtuoel.pehkui.api.ScaleType;
 import virtuoel.pehkui.api.ScaleTypes;
+import virtuoel.pehkui.api.TypedScaleModifier;
 
 public class ScaleUtils
 {
+	public static void tickScales(Entity entity)
+	{
+		final PehkuiEntityExtensions e = (PehkuiEntityExtensions) entity;
+		
+		if (PehkuiConfig.COMMON.sparseScaleData.get())
+		{
+			for (final ScaleData data : e.pehkui_getScaleDataArray())
+			{
+				if (data != null && shouldTick(data))
+				{
+					tickScale(data);
+				}
+			}
+		}
+		else
+		{
+			ScaleData data;
+			for (final ScaleType type : ScaleRegistries.getSnapshot(ScaleRegistries.SCALE_TYPES).getEntries())
+			{
+				data = e.pehkui_getScaleData(type);
+				
+				if (shouldTick(data))
+				{
+					tickScale(data);
+				}
+			}
+		}
+	}
+	
+	/**
+	 * Idle scale data is skipped, as ticking it would not change anything.
+	 * Types with tick listeners still tick all of their scale data so that callbacks are invoked every tick.
+	 * Subclasses may do their own work in {@link ScaleData#tick()}, so they are always ticked.
+	 */
+	private static boolean shouldTick(ScaleData data)
+	{
+		return data.getClass() != ScaleData.class || data.isChanging() || data.getScaleType().hasTickListeners();
+	}
+	
 	public static void tickScale(ScaleData data)
 	{
 		final ScaleType type = data.getScaleType();
@@ -44,7 +81,7 @@ public class ScaleUtils
 	public static void loadAverageScales(Entity target, Entity source, Entity... sources)
 	{
 		ScaleData scaleData;
-		for (ScaleType type : ScaleRegistries.SCALE_TYPES.values())
+		for (ScaleType type : ScaleRegistries.getSnapshot(ScaleRegistries.SCALE_TYPES).getEntries())
 		{
 			scaleData = type.getScaleData(target);
 			
@@ -69,32 +106,57 @@ public class ScaleUtils
 		
 		final List<? extends String> keptScales = PehkuiConfig.COMMON.scalesKeptOnRespawn.get();
 		
+		final PehkuiEntityExtensions t = (PehkuiEntityExtensions) target;
+		final PehkuiEntityExtensions s = (PehkuiEntityExtensions) source;
+		
+		final ScaleRegistrySnapshot<ScaleType> types = ScaleRegistries.getSnapshot(ScaleRegistries.SCALE_TYPES);
+		
 		ScaleType type;
 		ScaleData sourceData;
 		ScaleData targetData;
-		SortedSet<ScaleModifier> targetModifiers;
-		for (Entry<Identifier, ScaleType> entry : ScaleRegistries.SCALE_TYPES.entrySet())
+		for (int i = 0; i < types.size(); i++)
 		{
-			type = entry.getValue();
-			sourceData = type.getScaleData(source);
+			type = types.get(i);
+			sourceData = s.pehkui_getScaleDataIfPresent(type);
 			
-			if (sourceData.shouldPersist() || keptScales.contains(entry.getKey().toString()))
+			if (sourceData == null)
+			{
+				if (t.pehkui_getScaleDataIfPresent(type) == null)
+				{
+					continue;
+				}
+				
+				sourceData = DefaultScaleData.of(type);
+			}
+			
+			if (sourceData.shouldPersist() || keptScales.contains(types.getId(i).toString()))
 			{
 				targetData = type.getScaleData(target);
 				targetData.fromScale(sourceData);
 				
-				targetModifiers = targetData.getBaseValueModifiers();
-				targetModifiers.clear();
-				targetModifiers.addAll(sourceData.getBaseValueModifiers());
+				targetData.setModifierChain(sourceData.getModifierChain());
 			}
 		}
 	}
 	
 	public static void loadScale(Entity target, Entity source)
 	{
-		for (ScaleType type : ScaleRegistries.SCALE_TYPES.values())
+		final PehkuiEntityExtensions t = (PehkuiEntityExtensions) target;
+		final PehkuiEntityExtensions s = (PehkuiEntityExtensions) source;
+		
+		ScaleData sourceData;
+		for (ScaleType type : ScaleRegistries.getSnapshot(ScaleRegistries.SCALE_TYPES).getEntries())
 		{
-			type.getScaleData(target).fromScale(type.getScaleData(source));
+			sourceData = s.pehkui_getScaleDataIfPresent(type);
+			
+			if (sourceData != null)
+			{
+				type.getScaleData(target).fromScale(sourceData);
+			}
+			else if (t.pehkui_getScaleDataIfPresent(type) != null)
+			{
+				type.getScaleData(target).fromScale(DefaultScaleData.of(type));
+			}
 		}
 	}
 	
@@ -159,63 +221,102 @@ public class ScaleUtils
 	
 	public static NbtCompound buildScaleNbtFromPacketByteBuf(PacketByteBuf buffer)
 	{
-		final NbtCompound scaleData = new NbtCompound();
-		
-		final float scale = buffer.readFloat();
-		final float prevScale = buffer.readFloat();
-		final float fromScale = buffer.readFloat();
-		final float toScale = buffer.readFloat();
-		final int scaleTicks = buffer.readInt();
-		final int totalScaleTicks = buffer.readInt();
-		
-		scaleData.putFloat("scale", scale);
-		scaleData.putFloat("previous", prevScale);
-		scaleData.putFloat("initial", fromScale);
-		scaleData.putFloat("target", toScale);
-		scaleData.putInt("ticks", scaleTicks);
-		scaleData.putInt("total_ticks", totalScaleTicks);
-		
-		final int baseModifierCount = buffer.readInt();
+		return ScaleData.readSyncedFields(buffer, new NbtCompound());
+	}
+	
+	private static final ThreadLocal<ScaleData.ReceivedValues> RECEIVED_VALUES = ThreadLocal.withInitial(ScaleData.ReceivedValues::new);
+	
+	/**
+	 * Reads a scale packet and applies its values to the entities of the given world.
+	 */
+	public static void applyScalePacket(@Nullable World world, PacketByteBuf buffer)
+	{
+		final ScaleData.ReceivedValues values = RECEIVED_VALUES.get();
 		
-		if (baseModifierCount != 0)
+		int id;
+		Entity entity;
+		ScaleType type;
+		while (buffer.isReadable())
 		{
-			final NbtList modifiers = new NbtList();
+			id = buffer.readVarInt();
+			entity = world == null ? null : world.getEntityById(id);
 			
-			for (int i = 0; i < baseModifierCount; i++)
+			for (int i = buffer.readInt(); i > 0; i--)
 			{
-				modifiers.add(NbtOps.INSTANCE.createString(buffer.readString(32767)));
+				type = ScaleRegistries.getEntry(ScaleRegistries.SCALE_TYPES, ScalePaletteUtils.readId(buffer, ScaleRegistries.SCALE_TYPES));
+				values.read(buffer);
+				
+				if (entity != null && type != null)
+				{
+					type.getScaleData(entity).readReceivedValues(values);
+				}
 			}
-			
-			scaleData.put("baseValueModifiers", modifiers);
 		}
-		
-		final byte persistent = buffer.readByte();
-		
-		if (persistent != -1)
-		{
-			scaleData.putBoolean("persistent", persistent == 1);
-		}
-		
-		if (buffer.readBoolean())
-		{
-			scaleData.put("easing", NbtOps.INSTANCE.createString(buffer.readString(32767)));
-		}
-		
-		return scaleData;
 	}
 	
 	public static void syncScalesIfNeeded(Entity entity, Consumer<Packet<?>> packetSender)
 	{
 		if (((PehkuiEntityExtensions) entity).pehkui_shouldSyncScales())
 		{
-			syncScales(entity, packetSender, ScaleData::shouldSync, true);
+			syncScales(entity, packetSender, ScaleData::shouldSync, true, true);
 			((PehkuiEntityExtensions) entity).pehkui_setShouldSyncScales(false);
 		}
 	}
 	
+	/**
+	 * Sends the non-default scales of an entity to a player that starts tracking it.
+	 * The packet is reused for every player that starts tracking the entity during the same tick, as long as its scales don't change.
+	 */
 	public static void syncScalesOnTrackingStart(Entity entity, Consumer<Packet<?>> packetSender)
 	{
-		syncScales(entity, packetSender, ScaleUtils::hasScaleDataChanged, false);
+		final PehkuiEntityExtensions e = (PehkuiEntityExtensions) entity;
+		final long time = entity.world.getTime();
+		
+		if (e.pehkui_getTrackingScalePacketTime() != time)
+		{
+			final Packet<?> packet = createScalePacket(entity, ScaleUtils::hasScaleDataChanged, false, false);
+			
+			for (final ScaleData scaleData : e.pehkui_getScaleDataArray())
+			{
+				if (scaleData != null)
+				{
+					scaleData.discardOutdatedSyncBaseline();
+				}
+			}
+			
+			e.pehkui_setTrackingScalePacket(packet, time);
+		}
+		
+		final Packet<?> packet = e.pehkui_getTrackingScalePacket();
+		
+		if (packet != null)
+		{
+			packetSender.accept(packet);
+		}
+	}
+	
+	/**
+	 * Marks the non-default scales of an entity for sync, for a client that recreated the entity with default scales, such as a connecting player.
+	 * Scale data that isn't materialized or has default values is not sent, since the client already has those values.
+	 */
+	public static void markNonDefaultScalesForSync(Entity entity)
+	{
+		for (final ScaleData scaleData : ((PehkuiEntityExtensions) entity).pehkui_getScaleDataArray())
+		{
+			if (scaleData == null)
+			{
+				continue;
+			}
+			
+			if (hasScaleDataChanged(scaleData))
+			{
+				scaleData.markForSync(true);
+			}
+			else
+			{
+				scaleData.discardOutdatedSyncBaseline();
+			}
+		}
 	}
 	
 	private static boolean hasScaleDataChanged(final ScaleData scaleData)
@@ -226,17 +327,36 @@ public class ScaleUtils
 	private static final ThreadLocal<Collection<ScaleData>> SYNCED_SCALE_DATA = ThreadLocal.withInitial(ArrayList::new);
 	
 	public static void syncScales(Entity entity, Consumer<Packet<?>> packetSender, Predicate<ScaleData> condition, boolean unmark)
+	{
+		syncScales(entity, packetSender, condition, unmark, false);
+	}
+	
+	/**
+	 * @param delta Whether to only send fields that changed since the last delta. Packets sent with this must reach every client tracking the entity.
+	 */
+	private static void syncScales(Entity entity, Consumer<Packet<?>> packetSender, Predicate<ScaleData> condition, boolean unmark, boolean delta)
+	{
+		final Packet<?> packet = createScalePacket(entity, condition, unmark, delta);
+		
+		if (packet != null)
+		{
+			packetSender.accept(packet);
+		}
+	}
+	
+	@Nullable
+	private static Packet<?> createScalePacket(Entity entity, Predicate<ScaleData> condition, boolean unmark, boolean delta)
 	{
 		final Collection<ScaleData> syncedScales = SYNCED_SCALE_DATA.get();
 		
-		ScaleData scaleData;
-		for (final Entry<ScaleType, ScaleData> entry : ((PehkuiEntityExtensions) entity).pehkui_getScales().entrySet())
+		for (final ScaleData scaleData : ((PehkuiEntityExtensions) entity).pehkui_getScaleDataArray())
 		{
-			scaleData = entry.getValue();
-			
-			if (condition.test(scaleData))
+			if (scaleData != null && condition.test(scaleData))
 			{
-				syncedScales.add(scaleData);
+				if (!delta || scaleData.hasUnsyncedChanges())
+				{
+					syncedScales.add(scaleData);
+				}
 				
 				if (unmark)
 				{
@@ -254,13 +374,24 @@ public class ScaleUtils
 			
 			for (final ScaleData s : syncedScales)
 			{
-				buffer.writeIdentifier(ScaleRegistries.getId(ScaleRegistries.SCALE_TYPES, s.getScaleType()));
-				s.toPacket(buffer);
+				ScalePaletteUtils.writeId(buffer, ScaleRegistries.SCALE_TYPES, s.getScaleType());
+				
+				if (delta)
+				{
+					s.toDeltaPacket(buffer);
+				}
+				else
+				{
+					s.toPacket(buffer);
+				}
 			}
 			
-			packetSender.accept(new CustomPayloadS2CPacket(Pehkui.SCALE_PACKET, buffer));
 			syncedScales.clear();
+			
+			return ScaleSyncBatchUtils.createPacket(entity, buffer, delta);
 		}
+		
+		return null;
 	}
 	
 	public static double getBlockXOffset(BlockPos pos, PlayerEntity player)
@@ -380,27 +511,27 @@ public class ScaleUtils
 	{
 		return getTypedScale(entity, ScaleTypes.HITBOX_HEIGHT, tickDelta);
 	}
-
+	
 	public static float getInteractionWidthScale(Entity entity)
 	{
 		return getInteractionWidthScale(entity, 1.0F);
 	}
-
+	
 	public static float getInteractionWidthScale(Entity entity, float tickDelta)
 	{
 		return getTypedScale(entity, ScaleTypes.INTERACTION_WIDTH, tickDelta);
 	}
-
+	
 	public static float getInteractionHeightScale(Entity entity)
 	{
 		return getInteractionHeightScale(entity, 1.0F);
 	}
-
+	
 	public static float getInteractionHeightScale(Entity entity, float tickDelta)
 	{
 		return getTypedScale(entity, ScaleTypes.INTERACTION_HEIGHT, tickDelta);
 	}
-
+	
 	public static float getFallingScale(Entity entity)
 	{
 		return getFallingScale(entity, 1.0F);
@@ -598,6 +729,113 @@ public class ScaleUtils
 	
 	public static float getTypedScale(Entity entity, ScaleType type, float tickDelta)
 	{
-		return entity == null ? type.getDefaultBaseScale() : type.getScaleData(entity).getScale(tickDelta);
+		if (entity == null)
+		{
+			return type.getDefaultBaseScale();
+		}
+		
+		final ScaleData scaleData = ((PehkuiEntityExtensions) entity).pehkui_getScaleDataIfPresent(type);
+		
+		return scaleData != null ? scaleData.getScale(tickDelta) : getDefaultTypedScale(entity, type, tickDelta);
+	}
+	
+	public static float getTypedPrevScale(Entity entity, ScaleType type)
+	{
+		if (entity == null)
+		{
+			return type.getDefaultBaseScale();
+		}
+		
+		final ScaleData scaleData = ((PehkuiEntityExtensions) entity).pehkui_getScaleDataIfPresent(type);
+		
+		return scaleData != null ? scaleData.getPrevScale() : getDefaultTypedPrevScale(entity, type);
+	}
+	
+	/**
+	 * Evaluates the default modifiers of a type for an entity that has not materialized scale data of that type.
+	 * Chains that only depend on config values are computed once per type and reused for every entity.
+	 * Falls back to materializing the scale data if a modifier might depend on the entity in other ways.
+	 */
+	private static float getDefaultTypedScale(Entity entity, ScaleType type, float tickDelta)
+	{
+		final DefaultScaleData defaultData = DefaultScaleData.of(type);
+		final ScaleModifierChain chain = defaultData.getModifierChain();
+		
+		if (DefaultScaleData.isCacheable(chain))
+		{
+			return defaultData.getCachedScale(chain, false);
+		}
+		
+		final ScaleModifierChain.Compiled compiled = chain.getCompiled();
+		
+		float value = defaultData.getBaseScale();
+		
+		if (compiled != null)
+		{
+			return compiled.modifyScale(entity, type, value, tickDelta);
+		}
+		
+		for (final ScaleModifier m : chain)
+		{
+			if (m.getClass() == TypedScaleModifier.class)
+			{
+				value = ((TypedScaleModifier) m).modifyScale(entity, defaultData, value, tickDelta);
+			}
+			else if (isEntityIndependent(m))
+			{
+				value = m.modifyScale(defaultData, value, tickDelta);
+			}
+			else
+			{
+				return type.getScaleData(entity).getScale(tickDelta);
+			}
+		}
+		
+		return value;
+	}
+	
+	private static float getDefaultTypedPrevScale(Entity entity, ScaleType type)
+	{
+		final DefaultScaleData defaultData = DefaultScaleData.of(type);
+		final ScaleModifierChain chain = defaultData.getModifierChain();
+		
+		if (DefaultScaleData.isCacheable(chain))
+		{
+			return defaultData.getCachedScale(chain, true);
+		}
+		
+		final ScaleModifierChain.Compiled compiled = chain.getCompiled();
+		
+		float value = defaultData.getPrevBaseScale();
+		
+		if (compiled != null)
+		{
+			return compiled.modifyPrevScale(entity, type, value);
+		}
+		
+		for (final ScaleModifier m : chain)
+		{
+			if (m.getClass() == TypedScaleModifier.class)
+			{
+				value = ((TypedScaleModifier) m).modifyPrevScale(entity, defaultData, value);
+			}
+			else if (isEntityIndependent(m))
+			{
+				value = m.modifyPrevScale(defaultData, value);
+			}
+			else
+			{
+				return type.getScaleData(entity).getPrevScale();
+			}
+		}
+		
+		return value;
+	}
+	
+	private static boolean isEntityIndependent(ScaleModifier modifier)
+	{
+		final Class<?> c = modifier.getClass();
+		
+		return c == ScaleModifier.class || c == ClampingScaleModifier.class;
 	}
 }
@@ -0,0 +1,156 @@
+package virtuoel.pehkui.util;
+
+import java.util.List;
+
+import io.netty.buffer.Unpooled;
+import net.minecraft.entity.Entity;
+import net.minecraft.entity.data.DataTracker;
+import net.minecraft.entity.data.TrackedData;
+import net.minecraft.entity.data.TrackedDataHandlerRegistry;
+import net.minecraft.network.PacketByteBuf;
+import net.minecraft.network.packet.s2c.play.CustomPayloadS2CPacket;
+import net.minecraft.server.MinecraftServer;
+import virtuoel.pehkui.Pehkui;
+import virtuoel.pehkui.api.PehkuiConfig;
+import virtuoel.pehkui.api.ScaleData;
+import virtuoel.pehkui.api.ScaleTypes;
+
+/**
+ * Syncs the target scale and scale tick delay of the base scale type as tracked data of entities, if {@link PehkuiConfig.Common#trackedBaseScaleSync} is enabled when a server starts.
+ * <p>The entries use fixed ids above the ones entity classes register, instead of being registered on {@link Entity},
+ * so the ids of all other tracked data stay the same. Clients skip received tracked data with ids their entities don't have,
+ * so vanilla clients ignore these entries. Clients with Pehkui read them straight from the received updates once the server has announced this mode.
+ * <p>The scale tick delay entry is negative if the base scale was set instantly instead of by a transition, holding {@code -1 - delay}.
+ */
+public class TrackedScaleSyncUtils
+{
+	private static final int SCALE_TICK_DELAY_ID = 240;
+	private static final int TARGET_SCALE_ID = 241;
+	
+	public static final TrackedData<Integer> SCALE_TICK_DELAY = TrackedDataHandlerRegistry.INTEGER.create(SCALE_TICK_DELAY_ID);
+	public static final TrackedData<Float> TARGET_SCALE = TrackedDataHandlerRegistry.FLOAT.create(TARGET_SCALE_ID);
+	
+	private static boolean enabled = false;
+	private static volatile boolean receiving = false;
+	
+	public static void onServerStarting(MinecraftServer server)
+	{
+		enabled = PehkuiConfig.COMMON.trackedBaseScaleSync.get();
+	}
+	
+	public static void onServerStopped(MinecraftServer server)
+	{
+		enabled = false;
+	}
+	
+	/**
+	 * @return Whether entities created on the server should track their base scale as tracked data
+	 */
+	public static boolean isEnabled()
+	{
+		return enabled;
+	}
+	
+	public static CustomPayloadS2CPacket createModePacket()
+	{
+		return new CustomPayloadS2CPacket(Pehkui.TRACKED_SCALE_SYNC_PACKET, new PacketByteBuf(Unpooled.buffer()));
+	}
+	
+	/**
+	 * Sets whether the connected server syncs base scales as tracked data. Should be called on the network thread, before any following entity data is read.
+	 */
+	public static void setReceiving(boolean receiving)
+	{
+		TrackedScaleSyncUtils.receiving = receiving;
+	}
+	
+	public static boolean isReceiving()
+	{
+		return receiving;
+	}
+	
+	public static int getTrackedScaleTickDelay(ScaleData scaleData, boolean instant)
+	{
+		final int delay = scaleData.getScaleTickDelay();
+		
+		return instant ? -1 - delay : delay;
+	}
+	
+	public static int getDefaultTrackedScaleTickDelay()
+	{
+		return -1 - ScaleTypes.BASE.getDefaultTickDelay();
+	}
+	
+	/**
+	 * Applies the tracked base scale values from received entity data.
+	 * 
+	 * @param trackedScaleTickDelay Last received value of the scale tick delay entry, used if the received data only holds the target scale
+	 * @return Value of the scale tick delay entry after applying the received data
+	 */
+	public static int applyTrackedEntries(Entity entity, List<DataTracker.Entry<?>> entries, int trackedScaleTickDelay)
+	{
+		boolean received = false;
+		float targetScale = Float.NaN;
+		int delay = trackedScaleTickDelay;
+		
+		Object value;
+		for (final DataTracker.Entry<?> entry : entries)
+		{
+			value = entry.get();
+			
+			switch (entry.getData().getId())
+			{
+				case TARGET_SCALE_ID:
+					if (value instanceof Float)
+					{
+						targetScale = (Float) value;
+						received = true;
+					}
+					break;
+				case SCALE_TICK_DELAY_ID:
+					if (value instanceof Integer)
+					{
+						delay = (Integer) value;
+						received = true;
+					}
+					break;
+				default:
+					break;
+			}
+		}
+		
+		if (!received)
+		{
+			return trackedScaleTickDelay;
+		}
+		
+		final ScaleData scaleData = ScaleTypes.BASE.getScaleData(entity);
+		
+		if (Float.isNaN(targetScale))
+		{
+			targetScale = scaleData.getTargetScale();
+		}
+		
+		final boolean instant = delay < 0;
+		final int ticks = instant ? -1 - delay : delay;
+		
+		if (scaleData.getScaleTickDelay() != ticks)
+		{
+			scaleData.setScaleTickDelay(ticks);
+		}
+		
+		if (instant)
+		{
+			if (scaleData.getBaseScale() != targetScale || scaleData.getTargetScale() != targetScale)
+			{
+				scaleData.setScale(targetScale);
+			}
+		}
+		else if (scaleData.getTargetScale() != targetScale)
+		{
+			scaleData.setTargetScale(targetScale);
+		}
+		
+		return delay;
+	}
+}